@@ -0,0 +1,104 @@
+package study.querydsl.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//작은 커넥션 풀(INITIAL_POOL_SIZE)로 시작해서 MemberController 에 부하를 줬을 때
+//고정 크기 풀(fixed)과 대기 시간을 보고 풀을 키우는 AdaptivePoolSizer(adaptive) 의 처리량을 비교한다.
+//끝날 때 풀 크기와 커넥션 대기 시간(hikaricp.connections.acquire)을 로그로 남긴다 (처리량은 JMH 결과로 본다).
+//./gradlew jmh -PjmhIncludes=ConnectionPoolLoadBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConnectionPoolLoadBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolLoadBenchmark.class);
+    private static final int INITIAL_POOL_SIZE = 2;
+    private static final int ROWS = 10_000;
+
+    @Param({"fixed", "adaptive"})
+    public String pool;
+
+    Server h2;
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void start() throws SQLException {
+        h2 = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .run("--spring.profiles.active=jmh",
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:tcp://localhost:" + h2.getPort() + "/mem:pool;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.hikari.maximum-pool-size=" + INITIAL_POOL_SIZE,
+                        "--spring.datasource.hikari.minimum-idle=" + INITIAL_POOL_SIZE,
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--member.search-cache.max-rows=0",
+                        "--member.count-cache.max-size=0",
+                        "--datasource.pool.adaptive.enabled=" + pool.equals("adaptive"),
+                        "--datasource.pool.adaptive.min-size=" + INITIAL_POOL_SIZE,
+                        "--datasource.pool.adaptive.max-size=16",
+                        "--datasource.pool.adaptive.interval=1s");
+        SeededContext.seed(context.getBean(JdbcTemplate.class), ROWS);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws SQLException {
+        HikariDataSource hikari = context.getBean(DataSource.class).unwrap(HikariDataSource.class);
+        Timer acquire = context.getBean(MeterRegistry.class).get("hikaricp.connections.acquire").timer();
+        log.info("[{}] pool size {} -> {}, connection wait mean {}ms, max {}ms", pool,
+                INITIAL_POOL_SIZE, hikari.getMaximumPoolSize(),
+                String.format("%.2f", acquire.mean(TimeUnit.MILLISECONDS)), String.format("%.2f", acquire.max(TimeUnit.MILLISECONDS)));
+        context.close();
+        h2.stop();
+    }
+
+    //content + count 두 쿼리를 실행하는 검색
+    @Benchmark
+    @Threads(32)
+    public int searchPage() throws IOException, InterruptedException {
+        int page = ThreadLocalRandom.current().nextInt(100);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/v2/members?teamName=team3&page=" + page + "&size=20"))
+                .GET()
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        return response.statusCode();
+    }
+}
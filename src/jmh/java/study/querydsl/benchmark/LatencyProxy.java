@@ -0,0 +1,92 @@
+package study.querydsl.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//DB 와 앱 사이의 네트워크 지연을 흉내내는 TCP 프록시 (부하 테스트용)
+//클라이언트(앱)가 보낸 데이터를 latencyMillis 만큼 늦게 DB 로 넘기므로 왕복마다 그만큼 기다린다.
+//같은 JVM 안의 H2 TCP 서버는 소켓 I/O 가 거의 0 이라서, 이게 없으면 요청 스레드가 I/O 를 기다리는 상황이 나오지 않는다.
+class LatencyProxy implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final int targetPort;
+    private volatile long latencyMillis;
+    private final ExecutorService pumps = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "latency-proxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    LatencyProxy(int targetPort) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.targetPort = targetPort;
+        pumps.execute(this::accept);
+    }
+
+    //시딩처럼 측정하지 않는 구간은 지연 없이 돌리고 측정 직전에 건다
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                Socket target = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                client.setTcpNoDelay(true);
+                target.setTcpNoDelay(true);
+                pumps.execute(() -> pump(client, target, true));
+                pumps.execute(() -> pump(target, client, false));
+            } catch (IOException e) {
+                //close() 로 닫힌 경우
+            }
+        }
+    }
+
+    private void pump(Socket from, Socket to, boolean delayed) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                long delay = delayed ? latencyMillis : 0;
+                if (delay > 0) {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                }
+                out.write(buffer, 0, read);
+                out.flush();
+            }
+        } catch (IOException e) {
+            //한쪽이 연결을 끊으면 끝
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //이미 닫힌 소켓
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        pumps.shutdownNow();
+    }
+}
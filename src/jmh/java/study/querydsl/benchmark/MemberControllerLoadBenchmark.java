@@ -0,0 +1,105 @@
+package study.querydsl.benchmark;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//MemberController 부하 테스트: 톰캣 플랫폼 스레드 vs virtual-threads 프로필 (JDK 21 이상에서 실행)
+//DB 는 TCP 모드 H2 이고, 앞에 둔 LatencyProxy 가 왕복마다 dbLatencyMillis 만큼 지연을 넣는다 (0 이면 지연 없음).
+//톰캣 스레드(TOMCAT_THREADS)를 커넥션 풀(POOL_SIZE)보다 적게 두고 클라이언트 스레드를 그보다 많이 띄워서,
+//스레드가 모자랄 때의 처리량을 비교한다. 톰캣 스레드가 풀보다 많으면 두 방식 모두 풀에서 막히므로 차이가 나지 않는다.
+//./gradlew jmh -PjmhIncludes=MemberControllerLoadBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberControllerLoadBenchmark {
+
+    private static final int TOMCAT_THREADS = 4;
+    private static final int POOL_SIZE = 10;
+    private static final int ROWS = 10_000;
+
+    @Param({"platform", "virtual-threads"})
+    public String mode;
+
+    @Param({"0", "5"})
+    public long dbLatencyMillis;
+
+    Server h2;
+    LatencyProxy proxy;
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void start() throws SQLException, IOException {
+        h2 = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        proxy = new LatencyProxy(h2.getPort());
+        String profiles = mode.equals("platform") ? "jmh" : "jmh,virtual-threads";
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .run("--spring.profiles.active=" + profiles,
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--spring.datasource.url=jdbc:h2:tcp://localhost:" + proxy.getPort() + "/mem:load;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--spring.datasource.hikari.minimum-idle=" + POOL_SIZE,
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        //세션마다 남기는 통계 로그가 측정에 섞이지 않도록
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--member.search-cache.max-rows=0",
+                        "--member.count-cache.max-size=0");
+        SeededContext.seed(context.getBean(JdbcTemplate.class), ROWS);
+        proxy.setLatencyMillis(dbLatencyMillis);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        proxy.close();
+        h2.stop();
+    }
+
+    //I/O 대기가 긴 검색: 페이지 content + count
+    @Benchmark
+    @Threads(64)
+    public int searchPage() throws IOException, InterruptedException {
+        int page = ThreadLocalRandom.current().nextInt(100);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/v2/members?teamName=team3&page=" + page + "&size=20"))
+                .GET()
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        //limiter 가 돌려준 503 이 처리량으로 잡히지 않도록 실패로 끝낸다
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,74 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PagingStrategy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//MemberJpaRepository.search vs searchByBuilder, searchPageSimple vs searchPageComplex (OFFSET vs ID_FIRST)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberRepositoryBenchmark {
+
+    //조회할 페이지 번호 (0 = 첫 페이지, 큰 값은 offset 이 깊은 페이지)
+    @Param({"0", "100"})
+    public int page;
+
+    MemberJpaRepository memberJpaRepository;
+    MemberRepository memberRepository;
+    MemberSearchCondition condition;
+    PageRequest pageRequest;
+
+    @Setup
+    public void setUp(SeededContext context) {
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+
+        //한 팀, 한 나이 -> 전체의 1% (나이가 i % 100, 팀이 i % 10 이라 나이 33 인 회원은 모두 team3)
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(33);
+        condition.setAgeLoe(33);
+        pageRequest = PageRequest.of(page, 20);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(new MemberSearchCondition(), pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(new MemberSearchCondition(), pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplexIdFirst() {
+        return memberRepository.searchPageComplex(new MemberSearchCondition(), pageRequest, PagingStrategy.ID_FIRST);
+    }
+}
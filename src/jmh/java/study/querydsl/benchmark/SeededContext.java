@@ -0,0 +1,78 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//벤치마크마다 인메모리 H2 로 스프링 컨텍스트를 띄우고 rows 만큼 회원을 넣어 둔다
+//member: username = "member" + i, age = i % 100, team = "team" + (i % TEAM_COUNT)
+@State(Scope.Benchmark)
+public class SeededContext {
+
+    static final int TEAM_COUNT = 10;
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"10000"})
+    public int rows;
+
+    ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        //application.yml 보다 우선하도록 커맨드라인 인자로 넘긴다 (local 프로필의 InitMember 가 돌지 않게)
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=jmh",
+                        "--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        //같은 조건을 반복 조회하므로 결과, count 캐시를 끄지 않으면 캐시 조회만 측정하게 된다
+                        "--member.search-cache.max-rows=0",
+                        "--member.count-cache.max-size=0");
+        seed(context.getBean(JdbcTemplate.class), rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    //JPA 로 넣으면 시딩이 측정보다 오래 걸리므로 JDBC 배치로 직접 넣는다 (읽기 전용 벤치마크라 시퀀스는 신경쓰지 않는다)
+    static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        List<Object[]> teams = new ArrayList<>();
+        for (long i = 0; i < TEAM_COUNT; i++) {
+            teams.add(new Object[]{i + 1, "team" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into team (team_id, name, version) values (?, ?, 0)", teams);
+
+        List<Object[]> members = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < rows; i++) {
+            members.add(new Object[]{i + 1, "member" + i, (int) (i % 100), i % TEAM_COUNT + 1});
+            if (members.size() == BATCH_SIZE) {
+                insertMembers(jdbcTemplate, members);
+                members.clear();
+            }
+        }
+        insertMembers(jdbcTemplate, members);
+    }
+
+    private static void insertMembers(JdbcTemplate jdbcTemplate, List<Object[]> members) {
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id, version) values (?, ?, ?, ?, 0)", members);
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkWriteEvent;
+import study.querydsl.event.EntityWriteEvent;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+//검색 조건별 count 결과 캐시
+//Member, Team 이 바뀌면 어떤 조건의 count 가 바뀌는지 따지지 않고 전부 비운다 (키가 많지 않음)
+@Component
+public class MemberCountCache {
+
+    private final Cache<Key, Long> cache;
+
+    public MemberCountCache(@Value("${member.count-cache.ttl:30s}") Duration ttl,
+                            @Value("${member.count-cache.max-size:1000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public long count(MemberSearchCondition condition, LongSupplier counter) {
+        return count(condition, Long.MAX_VALUE, counter);
+    }
+
+    //limit 까지만 센 count (limit 을 넘으면 limit + 1)
+    public long count(MemberSearchCondition condition, long limit, LongSupplier counter) {
+        return cache.get(new Key(condition.normalize(), limit), key -> counter.getAsLong());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    //트랜잭션이 끝난 뒤에 비워야 커밋 전 값(또는 롤백된 값)으로 다시 채워진 캐시가 남지 않는다
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onWrite(EntityWriteEvent event) {
+        if (event.isOf(Member.class, Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onBulkWrite(BulkWriteEvent event) {
+        invalidateAll();
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Key {
+        private final MemberSearchCondition condition;
+        private final long limit;
+    }
+}
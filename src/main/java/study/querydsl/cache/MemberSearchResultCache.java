@@ -0,0 +1,284 @@
+package study.querydsl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkWriteEvent;
+import study.querydsl.event.EntityWriteEvent;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+//검색 조건 + 페이지별 MemberTeamDto 검색 결과 캐시 (read-through)
+//회원이 바뀌면 변경 전/후 상태 중 하나라도 조건에 맞는 항목만 비운다.
+//조건에 맞는 회원이 하나 늘거나 줄면 뒤쪽 페이지와 total 이 모두 밀리므로 페이지와 상관없이 그 조건 전체를 비운다.
+//비우기 전에 시작한 조회가 끝나고 나서 옛날 결과를 넣지 않도록, 비울 때마다 generation 을 올리고 넣기 직전에 확인한다.
+//쓰기 트랜잭션 안의 조회는 커밋되지 않은 행을 볼 수 있으므로 캐시를 거치지 않는다.
+@Component
+public class MemberSearchResultCache {
+
+    //크기는 항목 수가 아니라 결과 행 수로 제한한다 (빈 조건 하나가 테이블 전체를 담을 수 있으므로)
+    //caffeine 의 maximumWeight 는 W-TinyLFU 로 자주 쓰는 조건을 남긴다
+    private final Cache<Key, Object> cache;
+    //이보다 큰 결과는 캐시하지 않는다
+    private final int maxEntryRows;
+    private final AtomicLong generation = new AtomicLong();
+    //pageAsync 에서 조회 중인 결과, 같은 키로 동시에 들어온 요청은 조회를 한 번만 하고 같은 future 를 기다린다
+    private final ConcurrentMap<Key, CompletableFuture<?>> loading = new ConcurrentHashMap<>();
+
+    public MemberSearchResultCache(@Value("${member.search-cache.ttl:10s}") Duration ttl,
+                                   @Value("${member.search-cache.max-rows:100000}") long maxRows,
+                                   @Value("${member.search-cache.max-entry-rows:1000}") int maxEntryRows) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxRows)
+                .weigher((Key key, Object result) -> rows(result) + 1)
+                .build();
+        this.maxEntryRows = maxEntryRows;
+    }
+
+    //maxRows 는 loader 에 걸린 최대 행 수 (QueryGuardrails.maxRows, 0 이면 제한 없음)
+    //제한이 다른 요청끼리 결과를 나눠 쓰지 않도록 키에 넣고, maxRows 에 닿은 결과는 잘렸을 수 있으므로 캐시하지 않는다
+    @SuppressWarnings("unchecked")
+    public List<MemberTeamDto> search(MemberSearchCondition condition, int maxRows, Supplier<List<MemberTeamDto>> loader) {
+        return (List<MemberTeamDto>) get("search:" + maxRows, condition, Pageable.unpaged(), maxRows,
+                () -> Collections.unmodifiableList(loader.get()));
+    }
+
+    //kind 는 같은 조건, 같은 페이지라도 결과 형태가 다른 메서드를 구분한다 (ex. 전체 count / 제한 count)
+    @SuppressWarnings("unchecked")
+    public <T extends Page<MemberTeamDto>> T page(String kind, MemberSearchCondition condition, Pageable pageable,
+                                                  Supplier<T> loader) {
+        return (T) get(kind, condition, pageable, 0, loader);
+    }
+
+    //비동기로 만든 결과는 성공적으로 끝난 뒤에 get 과 같은 기준(generation, 크기)으로 넣는다 (실패한 결과는 캐시하지 않는다)
+    @SuppressWarnings("unchecked")
+    public <T extends Page<MemberTeamDto>> CompletableFuture<T> pageAsync(String kind, MemberSearchCondition condition,
+                                                                          Pageable pageable,
+                                                                          Supplier<CompletableFuture<T>> loader) {
+        Key key = new Key(kind, condition.normalize(), pageable);
+        T cached = (T) cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<T> promise = new CompletableFuture<>();
+        CompletableFuture<?> inFlight = loading.putIfAbsent(key, promise);
+        if (inFlight != null) {
+            return (CompletableFuture<T>) inFlight;
+        }
+
+        long loadedAt = generation.get();
+        CompletableFuture<T> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            loading.remove(key, promise);
+            promise.completeExceptionally(e);
+            throw e;
+        }
+        //캐시에 먼저 넣고 나서 loading 에서 빼야 그 사이에 들어온 요청이 조회를 또 하지 않는다
+        loaded.whenComplete((page, error) -> {
+            if (error == null) {
+                putIfCurrent(key, page, loadedAt);
+            }
+            loading.remove(key, promise);
+            if (error == null) {
+                promise.complete(page);
+            } else {
+                promise.completeExceptionally(error);
+            }
+        });
+        return promise;
+    }
+
+    private Object get(String kind, MemberSearchCondition condition, Pageable pageable, int maxRows, Supplier<?> loader) {
+        if (!cacheable()) {
+            return loader.get();
+        }
+        Key key = new Key(kind, condition.normalize(), pageable);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        Object loaded = loader.get();
+        if (maxRows <= 0 || rows(loaded) < maxRows) {
+            putIfCurrent(key, loaded, loadedAt);
+        }
+        return loaded;
+    }
+
+    //조회하는 동안 비우기가 있었으면 넣지 않는다
+    //evictIf 는 generation 을 먼저 올리고 지우므로, 여기서 같은 값을 봤다면 넣은 결과는 뒤따르는 비우기에 걸린다
+    private void putIfCurrent(Key key, Object result, long loadedAt) {
+        if (rows(result) > maxEntryRows) {
+            return;
+        }
+        cache.asMap().compute(key, (k, current) -> generation.get() == loadedAt ? result : current);
+    }
+
+    private static boolean cacheable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static int rows(Object result) {
+        return result instanceof Page ? ((Page<?>) result).getNumberOfElements() : ((List<?>) result).size();
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        loading.clear();
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onWrite(EntityWriteEvent event) {
+        if (event.isOf(Member.class)) {
+            onMemberWrite(event);
+        } else if (event.isOf(Team.class)) {
+            onTeamWrite(event);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onBulkWrite(BulkWriteEvent event) {
+        if (event.getEntityType() != Member.class) {
+            return;
+        }
+        if (event.getPreviousRows() == null || event.getCurrentRows() == null) {
+            invalidateAll();
+            return;
+        }
+        evictIf(key -> anyMatches(key.condition, event.getPreviousRows())
+                || anyMatches(key.condition, event.getCurrentRows()));
+    }
+
+    private void onMemberWrite(EntityWriteEvent event) {
+        Row current = Row.of((Member) event.getEntity());
+        if (event.getType() != EntityWriteEvent.Type.UPDATE) {
+            evictIf(key -> current.matches(key.condition));
+            return;
+        }
+        if (event.getPreviousState() == null) {
+            invalidateAll();
+            return;
+        }
+        Row previous = Row.of(event.getPreviousState());
+        evictIf(key -> previous.matches(key.condition) || current.matches(key.condition));
+    }
+
+    //팀 이름은 검색 조건(teamName)과 결과(teamName)에 모두 쓰인다
+    //새 팀은 소속 회원이 아직 없으므로 회원 쪽 이벤트로 충분하다
+    private void onTeamWrite(EntityWriteEvent event) {
+        if (event.getType() == EntityWriteEvent.Type.INSERT) {
+            return;
+        }
+        Team team = (Team) event.getEntity();
+        Map<String, Object> previousState = event.getPreviousState();
+        String previousName = previousState == null ? null : (String) previousState.get("name");
+        evictIf((key, result) -> Objects.equals(key.condition.getTeamName(), team.getName())
+                || (previousName != null && previousName.equals(key.condition.getTeamName()))
+                || contains(result, team.getId()));
+    }
+
+    private void evictIf(Predicate<Key> affected) {
+        evictIf((key, result) -> affected.test(key));
+    }
+
+    //조회 중인 future 는 결과를 보고 고를 수 없으므로 모두 떼어 낸다 (이후 요청은 새로 조회한다)
+    private void evictIf(BiPredicate<Key, Object> affected) {
+        generation.incrementAndGet();
+        loading.clear();
+        cache.asMap().entrySet().removeIf(entry -> affected.test(entry.getKey(), entry.getValue()));
+    }
+
+    private static boolean anyMatches(MemberSearchCondition condition, Collection<MemberTeamDto> rows) {
+        return rows.stream().anyMatch(row -> Row.of(row).matches(condition));
+    }
+
+    private static boolean contains(Object result, Long teamId) {
+        if (teamId == null) {
+            return false;
+        }
+        List<?> content = result instanceof Page ? ((Page<?>) result).getContent() : (List<?>) result;
+        return content.stream().anyMatch(dto -> ((MemberTeamDto) dto).getTeamId() == teamId);
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Key {
+        private final String kind;
+        private final MemberSearchCondition condition;
+        private final Pageable pageable;
+    }
+
+    //검색 조건과 비교할 회원 한 명의 상태
+    @RequiredArgsConstructor
+    private static class Row {
+        private final String username;
+        private final int age;
+        private final String teamName;
+        //팀이 초기화되지 않은 프록시라 이름을 모르면 teamName 조건은 맞는 것으로 본다
+        private final boolean teamKnown;
+
+        static Row of(Member member) {
+            return of(member.getUsername(), member.getAge(), member.getTeam());
+        }
+
+        static Row of(Map<String, Object> state) {
+            return of((String) state.get("username"), (Integer) state.get("age"), (Team) state.get("team"));
+        }
+
+        static Row of(MemberTeamDto dto) {
+            return new Row(dto.getUsername(), dto.getAge(), dto.getTeamName(), true);
+        }
+
+        private static Row of(String username, int age, Team team) {
+            if (team == null) {
+                return new Row(username, age, null, true);
+            }
+            if (!Hibernate.isInitialized(team)) {
+                return new Row(username, age, null, false);
+            }
+            return new Row(username, age, team.getName(), true);
+        }
+
+        boolean matches(MemberSearchCondition condition) {
+            return (condition.getUsername() == null || condition.getUsername().equals(username))
+                    && (condition.getTeamName() == null || !teamKnown || condition.getTeamName().equals(teamName))
+                    && (condition.getAgeGoe() == null || age >= condition.getAgeGoe())
+                    && (condition.getAgeLoe() == null || age <= condition.getAgeLoe());
+        }
+    }
+}
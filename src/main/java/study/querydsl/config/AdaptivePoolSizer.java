@@ -0,0 +1,155 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//관찰한 커넥션 대기 시간으로 하이카리 풀 크기(maximum-pool-size)를 조절한다
+//interval 동안 평균 대기(hikaricp.connections.acquire)가 target-wait 를 넘거나 커넥션을 기다리는 스레드가 있으면 step 만큼 늘리고(max-size 까지),
+//quiet-periods 번 연속으로 조용하고 줄인 크기로도 사용 중인 커넥션이 들어가면 step 만큼 줄인다(min-size 까지).
+//DB 가 동시에 처리할 수 있는 쿼리 수는 정해져 있으므로 max-size 는 DB 쪽 한계에 맞춘다.
+//줄인 뒤 남는 커넥션은 idle-timeout 이 지나면 닫히도록 minimum-idle 을 min-size 로 내린다.
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "datasource.pool.adaptive", name = "enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+
+    private final MeterRegistry registry;
+    private final List<Pool> pools;
+    private final int minSize;
+    private final int maxSize;
+    private final int step;
+    private final long targetWaitNanos;
+    private final int quietPeriods;
+    private final ScheduledExecutorService scheduler;
+
+    public AdaptivePoolSizer(ObjectProvider<DataSource> dataSources, MeterRegistry registry,
+                             @Value("${datasource.pool.adaptive.min-size:2}") int minSize,
+                             @Value("${datasource.pool.adaptive.max-size:20}") int maxSize,
+                             @Value("${datasource.pool.adaptive.step:2}") int step,
+                             @Value("${datasource.pool.adaptive.target-wait:20ms}") Duration targetWait,
+                             @Value("${datasource.pool.adaptive.quiet-periods:3}") int quietPeriods,
+                             @Value("${datasource.pool.adaptive.interval:10s}") Duration interval) {
+        this.registry = registry;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.step = step;
+        this.targetWaitNanos = targetWait.toNanos();
+        this.quietPeriods = quietPeriods;
+        //ReplicaRoutingConfig 를 쓰면 같은 풀이 여러 DataSource 빈 뒤에 있다
+        Set<HikariDataSource> hikariPools = Collections.newSetFromMap(new IdentityHashMap<>());
+        dataSources.orderedStream()
+                .map(dataSource -> DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class))
+                .filter(Objects::nonNull)
+                .forEach(hikariPools::add);
+        this.pools = hikariPools.stream().map(Pool::new).collect(Collectors.toList());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::resizeAll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void resizeAll() {
+        for (Pool pool : pools) {
+            try {
+                pool.resize();
+            } catch (RuntimeException e) {
+                log.warn("커넥션 풀 크기를 조절하지 못했습니다: {}", pool.hikari.getPoolName(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private class Pool {
+        private final HikariDataSource hikari;
+        private long lastCount;
+        private double lastTotalNanos;
+        private int quiet;
+
+        Pool(HikariDataSource hikari) {
+            this.hikari = hikari;
+            if (hikari.getMinimumIdle() > minSize) {
+                hikari.setMinimumIdle(minSize);
+            }
+        }
+
+        void resize() {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool == null) {
+                return;
+            }
+            long meanWait = meanWaitNanos();
+            int pending = pool.getThreadsAwaitingConnection();
+            int active = pool.getActiveConnections();
+            int size = hikari.getMaximumPoolSize();
+
+            if (meanWait > targetWaitNanos || pending > 0) {
+                quiet = 0;
+                apply(size, Math.min(size + step, maxSize), meanWait, pending);
+            } else if (++quiet >= quietPeriods && active <= size - step) {
+                quiet = 0;
+                apply(size, Math.max(size - step, minSize), meanWait, pending);
+            }
+        }
+
+        //지난 주기 동안의 평균 커넥션 대기 시간
+        private long meanWaitNanos() {
+            Timer acquire = registry.find("hikaricp.connections.acquire").tag("pool", hikari.getPoolName()).timer();
+            if (acquire == null) {
+                return 0;
+            }
+            long count = acquire.count();
+            double total = acquire.totalTime(TimeUnit.NANOSECONDS);
+            long mean = count > lastCount ? (long) ((total - lastTotalNanos) / (count - lastCount)) : 0;
+            lastCount = count;
+            lastTotalNanos = total;
+            return mean;
+        }
+
+        private void apply(int size, int newSize, long meanWait, int pending) {
+            if (newSize == size) {
+                return;
+            }
+            if (hikari.getMinimumIdle() > newSize) {
+                hikari.setMinimumIdle(newSize);
+            }
+            hikari.setMaximumPoolSize(newSize);
+            String direction = newSize > size ? "grow" : "shrink";
+            Counter.builder("datasource.pool.resize")
+                    .tag("pool", hikari.getPoolName())
+                    .tag("direction", direction)
+                    .register(registry)
+                    .increment();
+            log.info("커넥션 풀 {} 크기 {} -> {} (평균 대기 {}ms, 대기 스레드 {})", hikari.getPoolName(), size, newSize,
+                    TimeUnit.NANOSECONDS.toMillis(meanWait), pending);
+        }
+    }
+}
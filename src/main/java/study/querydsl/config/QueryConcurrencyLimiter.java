@@ -0,0 +1,119 @@
+package study.querydsl.config;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+//동시에 처리하는 검색 요청 수를 커넥션 풀 크기로 제한한다
+//가상 스레드는 요청마다 스레드를 만들기 때문에 톰캣 스레드 수가 더 이상 동시 요청 수를 막아 주지 않는다.
+//제한이 없으면 풀보다 많은 요청이 커넥션을 기다리다가 connectionTimeout 으로 한꺼번에 실패한다.
+//acquireTimeout 안에 차례가 오지 않으면 503 을 돌려준다.
+//요청 하나가 커넥션을 여러 개 쓰면(/v3/members/async 는 content, count 를 동시에) weight 로 그만큼 받는다.
+public class QueryConcurrencyLimiter extends OncePerRequestFilter {
+
+    private final int maxPermits;
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final ToIntFunction<HttpServletRequest> weight;
+
+    public QueryConcurrencyLimiter(int permits, Duration acquireTimeout) {
+        this(permits, acquireTimeout, request -> 1);
+    }
+
+    public QueryConcurrencyLimiter(int permits, Duration acquireTimeout, ToIntFunction<HttpServletRequest> weight) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits 는 1 이상이어야 합니다: " + permits);
+        }
+        this.maxPermits = permits;
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeout = acquireTimeout;
+        this.weight = weight;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        //전체보다 많이 달라고 하면 영원히 못 받으므로 전체로 줄인다
+        int acquired = Math.min(weight.applyAsInt(request), maxPermits);
+        if (!acquire(acquired)) {
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "too many concurrent queries");
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            //비동기 응답(CompletableFuture, StreamingResponseBody)은 응답이 끝날 때 반납한다
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener(released, acquired));
+            } else {
+                release(released, acquired);
+            }
+        }
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private boolean acquire(int count) {
+        try {
+            return permits.tryAcquire(count, acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void release(AtomicBoolean released, int count) {
+        if (released.compareAndSet(false, true)) {
+            permits.release(count);
+        }
+    }
+
+    private class ReleaseListener implements AsyncListener {
+
+        private final AtomicBoolean released;
+        private final int count;
+
+        ReleaseListener(AtomicBoolean released, int count) {
+            this.released = released;
+            this.count = count;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(released, count);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(released, count);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(released, count);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            //다시 비동기로 넘어가면 그 요청이 끝날 때도 받아야 한다
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.config;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+//요청을 처리하는 동안 컨트롤러 메서드의 @QueryLimits 를 QueryGuardrails 에 건다
+//비동기 응답은 요청 스레드를 놓는 시점에 풀어 준다 (다른 스레드에서 실행하는 쿼리는 타임아웃 기본값만 쓰고 행 수는 자르지 않는다)
+class QueryGuardrailInterceptor implements AsyncHandlerInterceptor {
+
+    private final QueryGuardrails guardrails;
+
+    QueryGuardrailInterceptor(QueryGuardrails guardrails) {
+        this.guardrails = guardrails;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            guardrails.begin(handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName(),
+                    handlerMethod.getMethodAnnotation(QueryLimits.class), response);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        guardrails.end();
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        guardrails.end();
+    }
+}
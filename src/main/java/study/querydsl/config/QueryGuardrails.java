@@ -0,0 +1,175 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.Query;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//조회 쿼리에 거는 기본 제한: 최대 행 수(max-rows), JDBC 쿼리 타임아웃(timeout), 최대 페이지 크기(max-page-size),
+//추정 카운트가 세는 최대 행 수(max-count-limit)
+//빈 검색 조건 하나로 테이블 전체를 읽거나 느린 쿼리가 커넥션을 계속 붙잡지 않도록 한다.
+//컨트롤러 메서드에 @QueryLimits 를 붙이면 그 요청을 처리하는 동안만 값을 바꾼다 (QueryGuardrailInterceptor).
+//제한 때문에 잘린 응답은 query.guardrail.truncated (endpoint, limit 태그) 로 세고, X-Result-Truncated 헤더에 걸린 제한 이름을 담는다.
+//max-rows 는 요청을 처리하는 동안만 건다, 배치나 내부 호출처럼 요청 밖에서 부르는 쪽은 결과를 자르지 않는다.
+@Component
+public class QueryGuardrails {
+
+    private static final String TIMEOUT_HINT = "javax.persistence.query.timeout";
+    private static final String NO_ENDPOINT = "none";
+    public static final String TRUNCATED_HEADER = "X-Result-Truncated";
+
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+    private final MeterRegistry registry;
+    private final Limits defaults;
+
+    public QueryGuardrails(MeterRegistry registry,
+                           @Value("${query.guardrail.max-rows:1000}") int maxRows,
+                           @Value("${query.guardrail.timeout:5s}") Duration timeout,
+                           @Value("${query.guardrail.max-page-size:100}") int maxPageSize,
+                           @Value("${query.guardrail.max-count-limit:10000}") long maxCountLimit) {
+        this.registry = registry;
+        this.defaults = new Limits(maxRows, timeout, maxPageSize, maxCountLimit);
+    }
+
+    public Limits limits() {
+        Scope scope = current.get();
+        return scope == null ? defaults : scope.limits;
+    }
+
+    //지금 적용되는 최대 행 수, 요청 밖이면 0 (제한 없음)
+    public int maxRows() {
+        Scope scope = current.get();
+        return scope == null ? 0 : scope.limits.maxRows;
+    }
+
+    //limitRows 는 호출하는 쪽에서 limit 을 직접 주지 않은 목록 조회일 때만 true
+    //잘렸는지 알 수 있도록 maxRows + 1 개까지 읽고 truncate 에서 maxRows 개로 자른다
+    public <Q extends Query> Q apply(Q query, boolean limitRows) {
+        Duration timeout = limits().timeout;
+        if (!timeout.isZero()) {
+            query.setHint(TIMEOUT_HINT, Math.toIntExact(timeout.toMillis()));
+        }
+        int maxRows = maxRows();
+        if (limitRows && maxRows > 0) {
+            query.setMaxResults(maxRows + 1);
+        }
+        return query;
+    }
+
+    public <T> List<T> truncate(List<T> rows) {
+        int maxRows = maxRows();
+        if (maxRows <= 0 || rows.size() <= maxRows) {
+            return rows;
+        }
+        truncated("max-rows");
+        return rows.subList(0, maxRows);
+    }
+
+    public Pageable clamp(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return pageable;
+        }
+        int size = clampPageSize(pageable.getPageSize());
+        if (size == pageable.getPageSize()) {
+            return pageable;
+        }
+        //페이지 번호는 줄어든 크기로 다시 계산해서 요청한 offset 근처부터 보여준다
+        return PageRequest.of(Math.toIntExact(pageable.getOffset() / size), size, pageable.getSort());
+    }
+
+    public int clampPageSize(int size) {
+        int maxPageSize = limits().maxPageSize;
+        if (maxPageSize <= 0 || size <= maxPageSize) {
+            return size;
+        }
+        truncated("max-page-size");
+        return maxPageSize;
+    }
+
+    //countLimit 파라미터로 얼마나 멀리까지 셀지를 클라이언트가 정하므로 상한을 둔다
+    public long clampCountLimit(long countLimit) {
+        long maxCountLimit = limits().maxCountLimit;
+        if (maxCountLimit <= 0 || countLimit <= maxCountLimit) {
+            return countLimit;
+        }
+        truncated("max-count-limit");
+        return maxCountLimit;
+    }
+
+    private void truncated(String limit) {
+        Scope scope = current.get();
+        Counter.builder("query.guardrail.truncated")
+                .tag("endpoint", scope == null ? NO_ENDPOINT : scope.endpoint)
+                .tag("limit", limit)
+                .register(registry)
+                .increment();
+        if (scope != null) {
+            scope.truncated(limit);
+        }
+    }
+
+    void begin(String endpoint, QueryLimits overrides, HttpServletResponse response) {
+        current.set(new Scope(endpoint, overrides == null ? defaults : defaults.with(overrides), response));
+    }
+
+    void end() {
+        current.remove();
+    }
+
+    @Getter
+    public static class Limits {
+
+        //0 이면 제한 없음
+        private final int maxRows;
+        private final Duration timeout;
+        private final int maxPageSize;
+        private final long maxCountLimit;
+
+        Limits(int maxRows, Duration timeout, int maxPageSize, long maxCountLimit) {
+            this.maxRows = maxRows;
+            this.timeout = timeout;
+            this.maxPageSize = maxPageSize;
+            this.maxCountLimit = maxCountLimit;
+        }
+
+        Limits with(QueryLimits overrides) {
+            return new Limits(
+                    overrides.maxRows() >= 0 ? overrides.maxRows() : maxRows,
+                    overrides.timeout().isEmpty() ? timeout : DurationStyle.detectAndParse(overrides.timeout()),
+                    overrides.maxPageSize() >= 0 ? overrides.maxPageSize() : maxPageSize,
+                    overrides.maxCountLimit() >= 0 ? overrides.maxCountLimit() : maxCountLimit);
+        }
+    }
+
+    private static class Scope {
+
+        private final String endpoint;
+        private final Limits limits;
+        private final HttpServletResponse response;
+        private final Set<String> truncated = new HashSet<>();
+
+        Scope(String endpoint, Limits limits, HttpServletResponse response) {
+            this.endpoint = endpoint;
+            this.limits = limits;
+            this.response = response;
+        }
+
+        //쿼리는 응답 본문을 쓰기 전에 실행되므로 아직 헤더를 붙일 수 있다
+        void truncated(String limit) {
+            if (truncated.add(limit) && !response.isCommitted()) {
+                response.addHeader(TRUNCATED_HEADER, limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//컨트롤러 메서드별로 QueryGuardrails 기본값을 바꾼다, 지정하지 않은 값은 기본값 그대로
+//0 은 제한 없음 ex) @QueryLimits(maxPageSize = 500)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryLimits {
+
+    int maxRows() default -1;
+
+    //"10s", "500ms" 형식
+    String timeout() default "";
+
+    int maxPageSize() default -1;
+
+    long maxCountLimit() default -1;
+}
@@ -0,0 +1,66 @@
+package study.querydsl.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.event.BulkWriteEvent;
+import study.querydsl.event.EntityWriteEvent;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//캐시는 쓰기가 커밋되면 바로 비우지만, 그 직후 읽기는 아직 복제되지 않은 replica 에서 옛날 값을 읽어 다시 채울 수 있다.
+//replica 가 primary 보다 늦을 수 있는 최대 시간(delay = max-lag + check-interval) 뒤에 같은 이벤트로 한 번 더 비운다.
+@Slf4j
+public class ReplicaCacheEviction {
+
+    private final MemberSearchResultCache resultCache;
+    private final MemberCountCache countCache;
+    private final Duration delay;
+    private final ScheduledExecutorService scheduler;
+
+    public ReplicaCacheEviction(MemberSearchResultCache resultCache, MemberCountCache countCache, Duration delay) {
+        this.resultCache = resultCache;
+        this.countCache = countCache;
+        this.delay = delay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-cache-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onWrite(EntityWriteEvent event) {
+        later(() -> {
+            resultCache.onWrite(event);
+            countCache.onWrite(event);
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onBulkWrite(BulkWriteEvent event) {
+        later(() -> {
+            resultCache.onBulkWrite(event);
+            countCache.onBulkWrite(event);
+        });
+    }
+
+    private void later(Runnable eviction) {
+        scheduler.schedule(() -> {
+            try {
+                eviction.run();
+            } catch (RuntimeException e) {
+                log.warn("replica 지연 뒤 캐시를 다시 비우지 못했습니다", e);
+            }
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//replica 가 읽어도 될 만큼 따라왔는지 주기적으로 확인한다
+//lagQuery 는 replica 에서 실행해서 지연(초)을 숫자 하나로 돌려주는 쿼리
+//  ex) PostgreSQL: select coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+//연결이 안 되거나, 결과가 null 이거나, maxLag 보다 늦으면 primary 에서 읽는다.
+//lagQuery 가 없으면 지연을 알 수 없으므로 replica 를 쓰지 않는다 (연결만 확인하면 복제가 멈춘 replica 도 쓰게 된다).
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean available;
+    //마지막으로 잰 지연, 재지 못했으면 null
+    private volatile Duration lag;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration checkInterval) {
+        this.replica = replica;
+        this.lagQuery = lagQuery == null || lagQuery.isEmpty() ? null : lagQuery;
+        this.maxLag = maxLag;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        check();
+        scheduler.scheduleWithFixedDelay(this::check, checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public Duration getLag() {
+        return lag;
+    }
+
+    public void check() {
+        Duration current;
+        try {
+            current = measure();
+        } catch (SQLException | RuntimeException e) {
+            if (available) {
+                log.warn("replica 에 연결할 수 없어 primary 에서 읽습니다", e);
+            }
+            lag = null;
+            available = false;
+            return;
+        }
+
+        boolean caughtUp = current != null && current.compareTo(maxLag) <= 0;
+        if (caughtUp != available) {
+            log.info("replica 지연 {} (허용 {}) -> {} 에서 읽습니다", current, maxLag, caughtUp ? "replica" : "primary");
+        }
+        lag = current;
+        available = caughtUp;
+    }
+
+    private Duration measure() throws SQLException {
+        try (Connection connection = replica.getConnection()) {
+            if (lagQuery == null) {
+                return null;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                if (!rs.next()) {
+                    return null;
+                }
+                double seconds = rs.getDouble(1);
+                return rs.wasNull() ? null : Duration.ofMillis((long) (seconds * 1000));
+            }
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+//datasource.replica.url 을 주면 읽기 전용 트랜잭션(search, searchPageSimple, searchPageComplex, findAll_Querydsl ...)을
+//replica 커넥션 풀로 보내고, 쓰기는 spring.datasource(primary) 로 보낸다.
+//replica 가 maxLag 보다 늦거나 연결되지 않으면 다시 따라올 때까지 읽기도 primary 로 보낸다.
+//변경 피드(findChangedSince)는 settle-time 이 maxLag 보다 짧으므로 항상 primary 에서 읽는다.
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.replica", name = "url")
+public class ReplicaRoutingConfig {
+
+    //스프링 부트가 spring.datasource 로 만들던 것과 같은 풀
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    //replica 커넥션은 읽기 전용으로 연다 (PostgreSQL, MySQL 드라이버는 실수로 보낸 쓰기를 바로 거절한다)
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:}") String username,
+                                              @Value("${datasource.replica.password:}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${datasource.replica.lag-query:}") String lagQuery,
+                                               @Value("${datasource.replica.max-lag:5s}") Duration maxLag,
+                                               @Value("${datasource.replica.check-interval:1s}") Duration checkInterval,
+                                               MeterRegistry registry) {
+        //지연을 모르는 replica 로 라우팅하면 복제가 멈췄거나 비어 있는 DB 에서 읽게 된다
+        if (lagQuery.isBlank()) {
+            throw new IllegalStateException("datasource.replica.url 을 주면 datasource.replica.lag-query 도 필요합니다");
+        }
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, lagQuery, maxLag, checkInterval);
+        Gauge.builder("datasource.replica.lag", monitor, m -> m.getLag() == null ? Double.NaN : m.getLag().toMillis() / 1000.0)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("datasource.replica.available", monitor, m -> m.isAvailable() ? 1 : 0)
+                .register(registry);
+        return monitor;
+    }
+
+    //lag-monitor 가 지연을 알아채기까지 check-interval 이 더 걸린다
+    @Bean(destroyMethod = "shutdown")
+    public ReplicaCacheEviction replicaCacheEviction(MemberSearchResultCache resultCache, MemberCountCache countCache,
+                                                     @Value("${datasource.replica.max-lag:5s}") Duration maxLag,
+                                                     @Value("${datasource.replica.check-interval:1s}") Duration checkInterval) {
+        return new ReplicaCacheEviction(resultCache, countCache, maxLag.plus(checkInterval));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, lagMonitor));
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//virtual-threads 프로필: 톰캣 요청을 가상 스레드에서 처리하고, 검색 요청 동시 실행 수를 커넥션 풀 크기로 제한한다
+//빌드는 계속 Java 11 로 하므로 Executors.newVirtualThreadPerTaskExecutor 는 리플렉션으로 부른다 (실행은 JDK 21 이상).
+//JDBC 드라이버, 커넥션 풀의 synchronized 구간에서는 가상 스레드가 캐리어 스레드에 고정(pinning)되므로
+//커넥션을 기다리는 가상 스레드 수를 QueryConcurrencyLimiter 로 묶어 둔다.
+@Slf4j
+@Configuration
+@Profile("virtual-threads")
+public class VirtualThreadConfig {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("tomcat 요청을 가상 스레드에서 처리합니다");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    //검색과 내보내기(export, reactive)는 따로 센다
+    //내보내기는 request-timeout(10m) 까지 커넥션을 쥐고 있을 수 있어서, 같은 자리를 나눠 쓰면 몇 개만으로 검색이 모두 막힌다.
+    //그래서 내보내기에는 stream-permits 만큼만 주고 나머지를 검색에 준다 (합이 커넥션 풀 크기를 넘지 않도록).
+    @Bean
+    public FilterRegistrationBean<QueryConcurrencyLimiter> queryConcurrencyLimiter(
+            DataSource dataSource,
+            @Value("${member.limiter.permits:0}") int permits,
+            @Value("${member.limiter.stream-permits:2}") int streamPermits,
+            @Value("${member.limiter.acquire-timeout:5s}") Duration acquireTimeout) throws SQLException {
+        //0 이면 커넥션 풀에서 내보내기 몫을 뺀 만큼
+        int limit = permits > 0 ? permits : Math.max(1, poolSize(dataSource) - streamPermits);
+        log.info("검색 요청 동시 실행 수 제한: {}", limit);
+
+        //비동기 검색은 content, count 쿼리가 커넥션을 하나씩 쓴다
+        FilterRegistrationBean<QueryConcurrencyLimiter> registration = new FilterRegistrationBean<>(new QueryConcurrencyLimiter(
+                limit, acquireTimeout, request -> request.getRequestURI().endsWith("/async") ? 2 : 1));
+        registration.setName("queryConcurrencyLimiter");
+        registration.addUrlPatterns("/v1/members", "/v1/members/changes", "/v2/members",
+                "/v3/members", "/v3/members/async", "/v4/members");
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryConcurrencyLimiter> streamConcurrencyLimiter(
+            @Value("${member.limiter.stream-permits:2}") int streamPermits,
+            @Value("${member.limiter.acquire-timeout:5s}") Duration acquireTimeout) {
+        log.info("내보내기 요청 동시 실행 수 제한: {}", streamPermits);
+
+        FilterRegistrationBean<QueryConcurrencyLimiter> registration =
+                new FilterRegistrationBean<>(new QueryConcurrencyLimiter(streamPermits, acquireTimeout));
+        registration.setName("streamConcurrencyLimiter");
+        registration.addUrlPatterns("/v1/members/export", "/v1/members/reactive");
+        return registration;
+    }
+
+    //maximum-pool-size 를 설정하지 않으면 풀이 시작하기 전까지 -1 이고, 시작할 때 Hikari 기본값(10)이 된다
+    static int poolSize(DataSource dataSource) throws SQLException {
+        int size = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        return size > 0 ? size : DEFAULT_POOL_SIZE;
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("virtual-threads 프로필은 JDK 21 이상에서 실행해야 합니다. 현재: " + Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("가상 스레드 executor 를 만들지 못했습니다", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.controller;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import study.querydsl.repository.InvalidRequestException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+//요청 값(watermark, cursor, 정렬 속성, limit ..)이 잘못되어 생긴 InvalidRequestException 은 400 으로 돌려준다
+//리포지토리에서 던진 것은 스프링 예외 변환(@Repository)으로 InvalidDataAccessApiUsageException 에 감싸여 온다
+//다른 IllegalArgumentException 은 요청 탓이 아니므로 500 으로 둔다
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public void badRequest(InvalidRequestException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+
+    //InvalidRequestException 이 아닌 원인은 그대로 500
+    @ExceptionHandler(InvalidDataAccessApiUsageException.class)
+    public void badRequest(InvalidDataAccessApiUsageException e, HttpServletResponse response) throws IOException {
+        if (!(e.getCause() instanceof InvalidRequestException)) {
+            throw e;
+        }
+        badRequest((InvalidRequestException) e.getCause(), response);
+    }
+}
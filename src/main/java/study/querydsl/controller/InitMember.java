@@ -1,15 +1,17 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.service.BatchInsertService;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
+import java.util.Iterator;
+import java.util.List;
 
 @Profile("local")
 @Component//스프링 빈에 자동으로 등록되게 만든다
@@ -26,23 +28,41 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService {
-        @PersistenceContext
-        EntityManager em;
+
+        private final BatchInsertService batchInsertService;
+
+        @Value("${member.init.count:100}")
+        private int memberCount;
 
         //테스트 데이터 만들어서 DB에 저장하기 local 실행일 때
         @Transactional
         public void init() {
             Team teamA = new Team("teamA");
             Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
+            batchInsertService.persistAll(List.of(teamA, teamB));
+
+            //회원은 저장하면서 바로 만든다 (수백만 건을 미리 List 로 만들지 않음)
+            Iterable<Member> members = () -> new Iterator<>() {
+                int i = 0;
 
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
+                @Override
+                public boolean hasNext() {
+                    return i < memberCount;
+                }
 
+                @Override
+                public Member next() {
+                    Team selectedTeam = i % 2 == 0 ? teamA : teamB;
+                    //팀은 이미 준영속 상태라 members 컬렉션은 DB 와 무관하다, 메모리에 계속 쌓이지 않도록 비운다
+                    selectedTeam.getMembers().clear();
+                    Member member = new Member("member" + i, i % 100, selectedTeam);
+                    i++;
+                    return member;
+                }
+            };
+            batchInsertService.persistAll(members);
         }
     }
 }
@@ -1,37 +1,110 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import study.querydsl.config.QueryLimits;
+import study.querydsl.dto.ChangeFeed;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberChangeDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberAsyncRepository;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PagingStrategy;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberAsyncRepository memberAsyncRepository;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
         return memberJpaRepository.search(condition);
     }
 
+    //결과를 메모리에 모으지 않고 한 줄에 한 건씩(NDJSON) 바로 내려보낸다
+    //StreamingResponseBody 는 메시지 컨버터를 거치지 않으므로 Content-Type 을 직접 정한다
+    @GetMapping(value = "/v1/members/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportMemberV1(MemberSearchCondition condition) {
+        StreamingResponseBody body = out -> memberJpaRepository.searchStream(condition, member -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(member));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    //Flux 를 반환하면 Spring MVC 가 요청 스레드를 놓아주고 비동기로 한 건씩 써 내려간다
+    @GetMapping(value = "/v1/members/reactive", produces = NDJSON)
+    public Flux<MemberTeamDto> searchMemberV1Reactive(MemberSearchCondition condition) {
+        return memberJpaRepository.searchReactive(condition);
+    }
+
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
         return memberRepository.searchPageSimple(condition, pageable);
     }
 
+    //countLimit 을 주면 전체 개수를 그 수까지만 센다 (totalCapped = true 면 "countLimit+" 로 표시)
+    //offset 이 깊은 페이지는 paging=ID_FIRST 로 id 만 먼저 페이징한다
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(required = false) Long countLimit,
+                                              @RequestParam(defaultValue = "OFFSET") PagingStrategy paging) {
+        if (countLimit != null) {
+            return memberRepository.searchPageComplex(condition, pageable, countLimit, paging);
+        }
+        return memberRepository.searchPageComplex(condition, pageable, paging);
+    }
+
+    //content, count 쿼리를 동시에 실행한다 (둘 다 무거운 조건일 때)
+    @GetMapping("/v3/members/async")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3Async(MemberSearchCondition condition, Pageable pageable) {
+        return memberAsyncRepository.searchPageComplex(condition, pageable);
+    }
+
+    //offset 대신 cursor 로 페이징, 응답의 nextCursor 를 다음 요청에 넘긴다
+    //cursor 페이징은 몇 번째 페이지든 비용이 같아서 한 번에 더 큰 페이지를 허용한다
+    @QueryLimits(maxPageSize = 500)
+    @GetMapping("/v4/members")
+    public CursorSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "20") int size,
+                                                     Sort sort) {
+        return memberRepository.searchSlice(condition, cursor, size, sort);
+    }
+
+    //응답의 watermark 를 다음 요청에 넘긴다, hasMore 가 false 면 잠시 뒤에 같은 watermark 로 다시 요청한다
+    @QueryLimits(maxPageSize = 1000)
+    @GetMapping("/v1/members/changes")
+    public ChangeFeed<MemberChangeDto> memberChanges(@RequestParam(required = false) String watermark,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        return memberRepository.findChangedSince(watermark, limit);
     }
 }
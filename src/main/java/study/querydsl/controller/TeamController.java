@@ -0,0 +1,25 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.config.QueryLimits;
+import study.querydsl.dto.ChangeFeed;
+import study.querydsl.dto.TeamChangeDto;
+import study.querydsl.repository.TeamJpaRepository;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamJpaRepository teamJpaRepository;
+
+    //회원 변경 피드(/v1/members/changes)에는 teamId 만 있으므로 팀 이름은 여기서 따로 받는다
+    @QueryLimits(maxPageSize = 1000)
+    @GetMapping("/v1/teams/changes")
+    public ChangeFeed<TeamChangeDto> teamChanges(@RequestParam(required = false) String watermark,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        return teamJpaRepository.findChangedSince(watermark, limit);
+    }
+}
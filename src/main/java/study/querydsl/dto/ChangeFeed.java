@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class ChangeFeed<T> {
+
+    private final List<T> content;
+    private final String watermark; //다음 요청에 그대로 넘기는 값, 바뀐 것이 없으면 요청한 값 그대로
+    private final boolean hasMore; //limit 만큼 찼으면 true, 기다리지 말고 바로 다음을 요청한다
+
+    public ChangeFeed(List<T> content, String watermark, boolean hasMore) {
+        this.content = content;
+        this.watermark = watermark;
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+//전체 개수를 끝까지 세지 않고 상한까지만 센 페이지
+//totalCapped 가 true 면 totalElements 는 "상한 이상" 이라는 뜻이다 (화면에는 1000+ 처럼 표시)
+public class EstimatedPage<T> extends PageImpl<T> {
+
+    private final boolean totalCapped;
+
+    public EstimatedPage(List<T> content, Pageable pageable, long total, boolean totalCapped) {
+        super(content, pageable, total);
+        this.totalCapped = totalCapped;
+    }
+
+    public boolean isTotalCapped() {
+        return totalCapped;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return totalCapped || super.hasNext();
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+import java.time.Instant;
+
+//팀 이름은 팀 변경 피드에서 받는다 (팀 이름이 바뀌어도 회원 행은 바뀌지 않으므로)
+//삭제된 회원은 deleted = true 이고 memberId, lastModified(삭제 시각)만 있다
+@Data
+public class MemberChangeDto {
+    private long memberId;
+    private String username;
+    private Integer age;
+    private Long teamId;
+    private Long version;
+    private Instant lastModified;
+    private boolean deleted;
+
+    @QueryProjection
+    public MemberChangeDto(long memberId, String username, int age, Long teamId, long version, Instant lastModified) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    @QueryProjection
+    public MemberChangeDto(long memberId, Instant deletedAt) {
+        this.memberId = memberId;
+        this.lastModified = deletedAt;
+        this.deleted = true;
+    }
+}
@@ -2,12 +2,32 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageGoe, ageLoe)
 
+    //teamName 조건은 team 을 inner join 하므로 team.name 으로 팀을 찾고 (team_id, age) 로 회원을 찾는다
+    //나이 조건만 있으면 (team_id, age) 의 앞 컬럼이 비어서 이 인덱스를 못 탄다
+    @SearchIndex(name = "idx_member_username", table = "member", columns = "username")
     private String username;
+    @SearchIndex(name = "idx_team_name", table = "team", columns = "name")
+    @SearchIndex(name = "idx_member_team_age", table = "member", columns = {"team_id", "age"})
     private String teamName;
+    @SearchIndex(name = "idx_member_team_age", table = "member", columns = {"team_id", "age"})
     private Integer ageGoe; //int가 아니라 Integer인 이유는 나이가 null일 수 있기 때문
+    @SearchIndex(name = "idx_member_team_age", table = "member", columns = {"team_id", "age"})
     private Integer ageLoe;
+
+    //검색 결과가 같은 조건은 같은 값이 되도록 맞춘 복사본 (캐시 키로 사용)
+    //빈 문자열은 검색 조건에서 무시되므로 null 로 바꾼다
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
 }
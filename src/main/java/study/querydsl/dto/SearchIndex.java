@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//검색 조건 필드가 where 절에서 쓰는 인덱스
+//검색 조건 클래스와 같은 dto 패키지에 둔다 (dto 가 repository 에 의존하지 않도록)
+//repository.SearchIndexPlan 이 모아서 DDL 로 만들고, 엔티티의 @Table(indexes) 와 같은지 테스트로 확인한다
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(SearchIndex.List.class)
+public @interface SearchIndex {
+
+    String name();
+
+    String table();
+
+    //복합 인덱스는 동등 조건 컬럼을 앞에, 범위 조건 컬럼을 뒤에 둔다
+    String[] columns();
+
+    @Target(ElementType.FIELD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface List {
+        SearchIndex[] value();
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+import java.time.Instant;
+
+//삭제된 팀은 deleted = true 이고 teamId, lastModified(삭제 시각)만 있다
+@Data
+public class TeamChangeDto {
+    private long teamId;
+    private String name;
+    private Long version;
+    private Instant lastModified;
+    private boolean deleted;
+
+    @QueryProjection
+    public TeamChangeDto(long teamId, String name, long version, Instant lastModified) {
+        this.teamId = teamId;
+        this.name = name;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    @QueryProjection
+    public TeamChangeDto(long teamId, Instant deletedAt) {
+        this.teamId = teamId;
+        this.lastModified = deletedAt;
+        this.deleted = true;
+    }
+}
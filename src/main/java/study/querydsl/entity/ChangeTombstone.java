@@ -0,0 +1,46 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+//삭제된 회원/팀 기록, 변경 피드(findChangedSince)가 삭제도 전달할 수 있도록 남긴다
+//삭제할 때 ChangeTombstoneRecorder 가 SQL 로 넣으므로 엔티티로는 읽기만 한다. 지운 행의 id 는 다시 쓰이지 않으므로 (종류, id) 가 키
+@Entity
+@IdClass(ChangeTombstone.Key.class)
+@Table(name = "change_tombstone", indexes = @Index(name = "idx_change_tombstone_deleted_at",
+        columnList = "entity_type, deleted_at, entity_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class ChangeTombstone {
+
+    @Id
+    @Column(name = "entity_type")
+    private String entityType;
+    @Id
+    @Column(name = "entity_id")
+    private Long entityId;
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String entityType;
+        private Long entityId;
+    }
+}
@@ -1,16 +1,24 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age"),
+        @Index(name = "idx_member_last_modified", columnList = "last_modified, member_id")})
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
-    @Id @GeneratedValue
+    //allocationSize 만큼 시퀀스를 한 번에 받아 오는 pooled 방식 -> insert 마다 시퀀스 조회를 하지 않는다
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -20,6 +28,13 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    //변경 피드(findChangedSince)용, 벌크 update 는 MemberBulkRepository 가 직접 올린다
+    @Version
+    private Long version;
+    @UpdateTimestamp
+    @Column(name = "last_modified")
+    private Instant lastModified;
+
     public Member(String username) {
         this(username, 0);
     }
@@ -1,22 +1,40 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_team_name", columnList = "name"),
+        @Index(name = "idx_team_last_modified", columnList = "last_modified, team_id")})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
     private String name;
 
+    //변경 피드(findChangedSince)용
+    @Version
+    private Long version;
+    @UpdateTimestamp
+    @Column(name = "last_modified")
+    private Instant lastModified;
+
+    //컬렉션 캐시는 회원 id 만 저장해서 Member 가 캐시되지 않으면 회원마다 따로 조회(N+1)하게 되므로 캐시하지 않는다
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
@@ -0,0 +1,30 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+//팀별 회원 수, 나이 합계/최소/최대 요약 테이블 (팀마다 한 행)
+//회원이 바뀔 때 TeamStatsMaintainer 가 SQL 로 갱신하므로 엔티티로는 읽기만 한다.
+//팀 삭제를 막지 않도록 team 과 연관관계(FK)를 두지 않고 team_id 로만 잇는다.
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    private long memberCount;
+    private long ageSum;
+    private Integer ageMin;
+    private Integer ageMax;
+}
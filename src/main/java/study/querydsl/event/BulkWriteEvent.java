@@ -0,0 +1,22 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+
+//Querydsl 벌크 update/delete 는 엔티티를 거치지 않아 EntityWriteEvent 가 없으므로 영향받은 id 로 따로 알린다
+//previousRows, currentRows 는 영향받은 회원의 변경 전/후 상태 (delete 면 currentRows 는 빈 목록)
+@Getter
+@ToString(exclude = {"previousRows", "currentRows"})
+@RequiredArgsConstructor
+public class BulkWriteEvent {
+
+    private final Class<?> entityType;
+    private final EntityWriteEvent.Type type;
+    private final List<Long> ids;
+    private final List<MemberTeamDto> previousRows;
+    private final List<MemberTeamDto> currentRows;
+}
@@ -0,0 +1,39 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+@Getter
+@ToString
+public class EntityWriteEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Object entity;
+    private final Type type;
+    //UPDATE 일 때 변경 전 값 (속성 이름 -> 값), 하이버네이트가 모르는 경우(detached merge 등)와 INSERT/DELETE 는 null
+    private final Map<String, Object> previousState;
+
+    public EntityWriteEvent(Object entity, Type type) {
+        this(entity, type, null);
+    }
+
+    public EntityWriteEvent(Object entity, Type type, Map<String, Object> previousState) {
+        this.entity = entity;
+        this.type = type;
+        this.previousState = previousState;
+    }
+
+    public boolean isOf(Class<?>... entityTypes) {
+        for (Class<?> entityType : entityTypes) {
+            if (entityType.isInstance(entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
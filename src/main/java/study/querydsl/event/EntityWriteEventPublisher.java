@@ -0,0 +1,73 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+//하이버네이트가 엔티티를 flush 할 때마다 EntityWriteEvent 를 발행한다
+//JPQL/Querydsl 벌크 연산(update, delete)은 영속성 컨텍스트를 거치지 않으므로 이벤트가 발생하지 않는다
+@Component
+@RequiredArgsConstructor
+public class EntityWriteEventPublisher implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher publisher;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publisher.publishEvent(new EntityWriteEvent(event.getEntity(), EntityWriteEvent.Type.INSERT));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publisher.publishEvent(new EntityWriteEvent(event.getEntity(), EntityWriteEvent.Type.UPDATE,
+                previousState(event.getPersister(), event.getOldState())));
+    }
+
+    private Map<String, Object> previousState(EntityPersister persister, Object[] oldState) {
+        if (oldState == null) {
+            return null;
+        }
+        String[] names = persister.getPropertyNames();
+        Map<String, Object> state = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            state.put(names[i], oldState[i]);
+        }
+        return state;
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publisher.publishEvent(new EntityWriteEvent(event.getEntity(), EntityWriteEvent.Type.DELETE));
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
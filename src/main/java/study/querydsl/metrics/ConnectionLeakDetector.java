@@ -0,0 +1,106 @@
+package study.querydsl.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//커넥션을 threshold 보다 오래 반납하지 않으면 누수로 보고 센다 (hikaricp.connections.leaked)
+//하이카리의 leak-detection-threshold 와 같은 기준이다. 하이카리는 스택 트레이스를 로그로만 남기므로
+//여기서는 메트릭으로 세고, 어느 repository 메서드(QueryScope)와 스레드에서 빌렸는지만 남긴다.
+//같은 커넥션을 두 번 경고하지 않도록 이게 켜져 있으면 하이카리 쪽 감지는 끈다 (InstrumentedDataSourcePostProcessor).
+//내보내기처럼 커넥션을 오래 쥐고 있는 게 정상인 작업은 longRunning 안에서 빌려서 감지 대상에서 뺀다.
+@Slf4j
+public class ConnectionLeakDetector {
+
+    private static final ThreadLocal<Boolean> LONG_RUNNING = new ThreadLocal<>();
+
+    private final long thresholdNanos;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final LongAdder leaked = new LongAdder();
+    private final ScheduledExecutorService scheduler;
+
+    public ConnectionLeakDetector(Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(threshold.toMillis() / 2, 10);
+        scheduler.scheduleWithFixedDelay(this::scan, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    //task 안에서 이 스레드가 빌리는 커넥션은 누수로 세지 않는다 (스트리밍 응답처럼 몇 분씩 쥐고 있는 경우)
+    public static <T> T longRunning(Supplier<T> task) {
+        Boolean previous = LONG_RUNNING.get();
+        LONG_RUNNING.set(Boolean.TRUE);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                LONG_RUNNING.remove();
+            } else {
+                LONG_RUNNING.set(previous);
+            }
+        }
+    }
+
+    //감지 대상이 아니면 null
+    Lease acquired() {
+        if (LONG_RUNNING.get() != null) {
+            return null;
+        }
+        QueryScope scope = QueryScope.current();
+        Lease lease = new Lease(System.nanoTime(), Thread.currentThread().getName(), scope == null ? null : scope.getCaller());
+        leases.add(lease);
+        return lease;
+    }
+
+    void released(Lease lease) {
+        if (leases.remove(lease) && lease.reported) {
+            log.info("누수로 보고한 커넥션이 {}ms 만에 반납되었습니다 (thread={}, caller={})",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.acquiredAt), lease.thread, lease.caller);
+        }
+    }
+
+    void scan() {
+        long now = System.nanoTime();
+        for (Lease lease : leases) {
+            if (!lease.reported && now - lease.acquiredAt > thresholdNanos) {
+                lease.reported = true;
+                leaked.increment();
+                log.warn("커넥션을 {}ms 넘게 반납하지 않았습니다 (thread={}, caller={})",
+                        TimeUnit.NANOSECONDS.toMillis(thresholdNanos), lease.thread, lease.caller);
+            }
+        }
+    }
+
+    //지금까지 누수로 보고한 수
+    public long getLeaked() {
+        return leaked.sum();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    static class Lease {
+        private final long acquiredAt;
+        private final String thread;
+        private final String caller;
+        private volatile boolean reported;
+
+        private Lease(long acquiredAt, String thread, String caller) {
+            this.acquiredAt = acquiredAt;
+            this.thread = thread;
+            this.caller = caller;
+        }
+    }
+}
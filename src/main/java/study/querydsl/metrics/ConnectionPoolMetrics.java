@@ -0,0 +1,48 @@
+package study.querydsl.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+//커넥션 대기 시간, active/idle/pending 수는 스프링 부트가 하이카리 풀마다 hikaricp.connections.* 로 등록한다
+//여기서는 같은 pool 태그로 누수 수(hikaricp.connections.leaked)를 더한다
+//MeterBinder 로 만들면 MeterRegistry 를 만드는 중에 DataSource 를 만들게 되어(ReplicaRoutingConfig 는 반대로 MeterRegistry 를 쓴다)
+//모든 빈을 만든 뒤에 등록한다.
+@Component
+public class ConnectionPoolMetrics implements SmartInitializingSingleton {
+
+    private final ObjectProvider<DataSource> dataSources;
+    private final MeterRegistry registry;
+
+    public ConnectionPoolMetrics(ObjectProvider<DataSource> dataSources, MeterRegistry registry) {
+        this.dataSources = dataSources;
+        this.registry = registry;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        dataSources.orderedStream()
+                .filter(dataSource -> dataSource instanceof InstrumentedDataSource)
+                .map(dataSource -> (InstrumentedDataSource) dataSource)
+                .filter(dataSource -> dataSource.getLeakDetector() != null)
+                .forEach(dataSource -> FunctionCounter.builder("hikaricp.connections.leaked", dataSource.getLeakDetector(),
+                                ConnectionLeakDetector::getLeaked)
+                        .description("leak-detection-threshold 보다 오래 반납하지 않은 커넥션 수")
+                        .tag("pool", poolName(dataSource))
+                        .register(registry));
+    }
+
+    private static String poolName(InstrumentedDataSource dataSource) {
+        try {
+            return dataSource.unwrap(HikariDataSource.class).getPoolName();
+        } catch (SQLException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+//hibernate.generate_statistics 를 켠 경우(hibernate-stats 프로필)에만 2차 캐시 적중률 등을 hibernate.* 메트릭으로 내보낸다
+//스프링 부트는 hibernate-micrometer 가 있어야 자동으로 묶으므로 micrometer-core 에 들어 있는 같은 binder 를 직접 묶는다.
+@Component
+public class HibernateStatisticsMetrics implements SmartInitializingSingleton {
+
+    private final EntityManagerFactory emf;
+    private final MeterRegistry registry;
+
+    public HibernateStatisticsMetrics(EntityManagerFactory emf, MeterRegistry registry) {
+        this.emf = emf;
+        this.registry = registry;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void afterSingletonsInstantiated() {
+        SessionFactory sessionFactory = emf.unwrap(SessionFactory.class);
+        if (sessionFactory.getStatistics().isStatisticsEnabled()) {
+            new HibernateMetrics(sessionFactory, "default", Tags.empty()).bindTo(registry);
+        }
+    }
+}
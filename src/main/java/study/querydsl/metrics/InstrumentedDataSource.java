@@ -0,0 +1,165 @@
+package study.querydsl.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+//커넥션에서 만든 Statement 의 execute* 시간과 ResultSet.next() 행 수를 현재 QueryScope 에 더한다
+//하이버네이트, Querydsl(JPAQueryFactory), JdbcTemplate 모두 여기를 거치므로 한 곳에서 센다.
+//QueryScope 가 없는(repository 밖) 호출은 Statement 를 감싸지 않으므로 커넥션 프록시 호출 비용만 든다.
+//빈으로 등록된 풀을 감싸므로 컨텍스트가 닫힐 때 close() 로 풀도 같이 닫는다.
+public class InstrumentedDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    //null 이면 누수를 추적하지 않는다
+    private final ConnectionLeakDetector leakDetector;
+
+    public InstrumentedDataSource(DataSource target) {
+        this(target, null);
+    }
+
+    public InstrumentedDataSource(DataSource target, ConnectionLeakDetector leakDetector) {
+        super(target);
+        this.leakDetector = leakDetector;
+    }
+
+    ConnectionLeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (leakDetector != null) {
+            leakDetector.shutdown();
+        }
+        if (getTargetDataSource() instanceof AutoCloseable) {
+            ((AutoCloseable) getTargetDataSource()).close();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(super.getConnection(username, password));
+    }
+
+    private Connection connection(Connection target) {
+        ConnectionLeakDetector.Lease lease = leakDetector == null ? null : leakDetector.acquired();
+        return proxy(Connection.class, target, (method, args) -> {
+            if (lease != null && method.getName().equals("close")) {
+                leakDetector.released(lease);
+            }
+            Object result = invoke(target, method, args);
+            if (result instanceof Statement && QueryScope.current() != null) {
+                //prepareStatement(sql, ...) 는 SQL 을 미리 받는다
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return statement((Statement) result, sql, getTargetDataSource());
+            }
+            return result;
+        });
+    }
+
+    //source 는 이 커넥션을 빌려 준 풀, 느린 쿼리의 실행 계획을 같은 곳에서 구한다
+    private static Statement statement(Statement target, String preparedSql, DataSource source) {
+        Class<? extends Statement> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        //느린 쿼리를 기록할 때 쓰는 바인딩 값 (1부터 시작하는 파라미터 번호 - 1)
+        List<Object> parameters = new ArrayList<>();
+        return proxy(type, target, (method, args) -> {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    bind(parameters, (Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters")) {
+                    parameters.clear();
+                }
+                Object result = invoke(target, method, args);
+                return name.equals("getResultSet") ? resultSet((ResultSet) result) : result;
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = invoke(target, method, args);
+                return result instanceof ResultSet ? resultSet((ResultSet) result) : result;
+            } finally {
+                QueryScope scope = QueryScope.current();
+                if (scope != null) {
+                    //Statement.execute(sql) 는 실행할 때 SQL 을 받는다
+                    String sql = preparedSql != null ? preparedSql
+                            : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    scope.statementExecuted(source, sql, parameters.toArray(), System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    private static void bind(List<Object> parameters, int index, Object value) {
+        while (parameters.size() < index) {
+            parameters.add(null);
+        }
+        parameters.set(index - 1, value);
+    }
+
+    private static ResultSet resultSet(ResultSet target) {
+        QueryScope scope = QueryScope.current();
+        if (target == null || scope == null || !scope.isSampled()) {
+            return target;
+        }
+        return proxy(ResultSet.class, target, (method, args) -> {
+            Object result = invoke(target, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                QueryScope rowScope = QueryScope.current();
+                if (rowScope != null) {
+                    rowScope.rowRead();
+                }
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<? extends T> type, T target, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            //unwrap/isWrapperFor 는 원래 객체 기준으로 답해야 하이버네이트, 풀이 실제 드라이버 객체를 꺼낼 수 있다
+            switch (method.getName()) {
+                case "unwrap":
+                case "isWrapperFor":
+                    return invoke(target, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            return handler.handle(method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+//스프링 부트가 만든 DataSource(Hikari) 를 InstrumentedDataSource 로 감싼다
+//설정 바인딩이 끝난 뒤(after initialization)에 감싸므로 spring.datasource.hikari.* 는 그대로 적용된다
+//다른 DataSource 를 감싸거나 고르기만 하는 것(ReplicaRoutingConfig)은 그 안의 커넥션 풀에서 이미 세므로 두 번 감싸지 않는다
+@Component
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof DelegatingDataSource) && !(bean instanceof AbstractRoutingDataSource)) {
+            return new InstrumentedDataSource((DataSource) bean, leakDetector(bean));
+        }
+        return bean;
+    }
+
+    //spring.datasource.hikari.leak-detection-threshold 를 준 풀만
+    //같은 커넥션을 하이카리와 ConnectionLeakDetector 가 두 번 경고하지 않도록 하이카리 쪽 감지는 끈다
+    private static ConnectionLeakDetector leakDetector(Object bean) {
+        if (bean instanceof HikariDataSource && ((HikariDataSource) bean).getLeakDetectionThreshold() > 0) {
+            HikariDataSource hikari = (HikariDataSource) bean;
+            Duration threshold = Duration.ofMillis(hikari.getLeakDetectionThreshold());
+            hikari.setLeakDetectionThreshold(0);
+            return new ConnectionLeakDetector(threshold);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.metrics;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//repository 메서드 한 번 호출 동안 실행한 SQL 수, 조회한 행 수, SQL 실행 시간을 모으는 스레드별 범위
+//범위가 없으면(repository 밖) InstrumentedDataSource 는 JDBC 객체를 감싸지 않는다.
+//행 수는 ResultSet.next() 마다 세야 해서 비싸므로 샘플링에 걸린 호출(sampled)만 센다.
+//repository 메서드가 다른 스레드에 맡긴 작업은 propagate 로 감싸면 같은 범위에 합산된다 (동시에 더할 수 있으므로 LongAdder).
+public final class QueryScope {
+
+    private static final ThreadLocal<QueryScope> current = new ThreadLocal<>();
+
+    private final String repository;
+    private final String method;
+    private final boolean sampled;
+    private final SlowQueryLog slowQueryLog;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+
+    private QueryScope(String repository, String method, boolean sampled, SlowQueryLog slowQueryLog) {
+        this.repository = repository;
+        this.method = method;
+        this.sampled = sampled;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    //이미 범위 안이면(repository 가 다른 repository 를 부르는 경우) null, 바깥 호출에 합산된다
+    static QueryScope begin(String repository, String method, boolean sampled, SlowQueryLog slowQueryLog) {
+        if (current.get() != null) {
+            return null;
+        }
+        QueryScope scope = new QueryScope(repository, method, sampled, slowQueryLog);
+        current.set(scope);
+        return scope;
+    }
+
+    //지금 범위를 task 를 실행하는 스레드에도 건다, 범위 밖이면 task 그대로
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        QueryScope scope = current.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            QueryScope previous = current.get();
+            current.set(scope);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    static QueryScope current() {
+        return current.get();
+    }
+
+    void end() {
+        current.remove();
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    String getCaller() {
+        return repository + "." + method;
+    }
+
+    void statementExecuted(DataSource dataSource, String sql, Object[] parameters, long nanos) {
+        statements.increment();
+        queryNanos.add(nanos);
+        slowQueryLog.check(repository, method, dataSource, sql, parameters, nanos);
+    }
+
+    void rowRead() {
+        rows.increment();
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getQueryNanos() {
+        return queryNanos.sum();
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//repository 메서드별 SQL 수(repository.queries), 조회 행 수(repository.rows), 응답 시간(repository.duration)
+//sample-rate 비율의 호출만 메트릭으로 남긴다 (1.0 = 전부).
+//느린 쿼리는 샘플링과 상관없이 잡아야 하므로 QueryScope 는 모든 호출에 연다.
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    private final MeterRegistry registry;
+    private final SlowQueryLog slowQueryLog;
+    private final double sampleRate;
+    //스프링 데이터 repository 들은 상속받은 메서드(findAll 등)를 같이 쓰므로 repository 클래스별로 나눈다
+    private final Map<Class<?>, Map<Method, Meters>> meters = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsAspect(MeterRegistry registry, SlowQueryLog slowQueryLog,
+                                   @Value("${metrics.repository.sample-rate:0.1}") double sampleRate) {
+        this.registry = registry;
+        this.slowQueryLog = slowQueryLog;
+        this.sampleRate = sampleRate;
+    }
+
+    //MemberRepository 같은 스프링 데이터 인터페이스는 JpaRepository 에서 물려받은 메서드도 포함된다
+    @Around("execution(public * study.querydsl.repository..*Repository+.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Meters methodMeters = meters
+                .computeIfAbsent(joinPoint.getThis().getClass(), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                        method -> new Meters(registry, repositoryName(joinPoint), method.getName()));
+        boolean sampled = sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        QueryScope scope = QueryScope.begin(methodMeters.repository, methodMeters.method, sampled, slowQueryLog);
+        if (scope == null) {
+            return joinPoint.proceed();
+        }
+
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } finally {
+            scope.end();
+            if (sampled) {
+                //비동기 결과는 다른 스레드의 쿼리(QueryScope.propagate)까지 끝난 뒤에 남긴다
+                if (result instanceof CompletionStage) {
+                    ((CompletionStage<?>) result).whenComplete((value, error) -> record(methodMeters, scope, start));
+                } else {
+                    record(methodMeters, scope, start);
+                }
+            }
+        }
+    }
+
+    private static void record(Meters methodMeters, QueryScope scope, long start) {
+        methodMeters.duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        methodMeters.queries.record(scope.getStatements());
+        methodMeters.rows.record(scope.getRows());
+    }
+
+    //스프링 데이터 repository 는 JDK 프록시라 대상 클래스(SimpleJpaRepository) 대신 우리 인터페이스 이름을 쓴다
+    private static String repositoryName(ProceedingJoinPoint joinPoint) {
+        for (Class<?> type : joinPoint.getThis().getClass().getInterfaces()) {
+            if (type.getPackageName().startsWith("study.querydsl.repository")) {
+                return type.getSimpleName();
+            }
+        }
+        return ClassUtils.getUserClass(joinPoint.getTarget()).getSimpleName();
+    }
+
+    private static class Meters {
+
+        private final String repository;
+        private final String method;
+        private final Timer duration;
+        private final DistributionSummary queries;
+        private final DistributionSummary rows;
+
+        Meters(MeterRegistry registry, String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+            this.duration = Timer.builder("repository.duration")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.queries = DistributionSummary.builder("repository.queries")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .register(registry);
+            this.rows = DistributionSummary.builder("repository.rows")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .baseUnit("rows")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.metrics;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@ToString
+public class SlowQuery {
+
+    private final Instant executedAt;
+    private final String repository;
+    private final String method;
+    private final long elapsedMillis;
+    private final String jpql; //use_sql_comments 로 SQL 앞에 붙은 주석, 없으면 null
+    private final String sql;
+    private final List<String> parameters; //값 대신 타입(문자열은 길이)만 남긴다
+    private volatile String plan; //EXPLAIN 결과, 별도 스레드에서 채운다
+
+    SlowQuery(Instant executedAt, String repository, String method, long elapsedMillis,
+              String jpql, String sql, List<String> parameters) {
+        this.executedAt = executedAt;
+        this.repository = repository;
+        this.method = method;
+        this.elapsedMillis = elapsedMillis;
+        this.jpql = jpql;
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+}
@@ -0,0 +1,23 @@
+package study.querydsl.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//GET /actuator/slowqueries
+//읽기 전용이다. 웹에 노출하는 actuator 에는 인증이 없으므로 목록을 지우는 쓰기 작업은 두지 않는다 (오래된 것은 capacity 로 밀려난다)
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueryEndpoint {
+
+    private final SlowQueryLog slowQueryLog;
+
+    @ReadOperation
+    public List<SlowQuery> slowQueries() {
+        return slowQueryLog.getQueries();
+    }
+}
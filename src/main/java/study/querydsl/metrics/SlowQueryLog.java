@@ -0,0 +1,124 @@
+package study.querydsl.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//repository 안에서 실행한 SQL 중 threshold 보다 오래 걸린 것을 최근 capacity 개까지 보관한다 (/actuator/slowqueries)
+//org.hibernate.SQL 로그를 켜지 않아도 느린 쿼리의 JPQL, SQL, 파라미터 타입, 실행 계획을 볼 수 있다.
+//실행 계획(EXPLAIN)은 요청 스레드가 커넥션을 하나 더 잡지 않도록 별도 스레드 하나에서 구하고, 밀리면 버린다.
+//쿼리를 실행한 커넥션 풀(primary 또는 replica)에서 구하므로 replica 에서 느렸던 쿼리는 replica 의 계획을 본다.
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    private final Duration threshold;
+    private final long thresholdNanos;
+    private final int capacity;
+    private final boolean explain;
+    private final Deque<SlowQuery> queries = new ArrayDeque<>();
+    private final ThreadPoolExecutor explainExecutor;
+
+    public SlowQueryLog(@Value("${metrics.slow-query.threshold:500ms}") Duration threshold,
+                        @Value("${metrics.slow-query.capacity:100}") int capacity,
+                        @Value("${metrics.slow-query.explain:true}") boolean explain) {
+        this.threshold = threshold;
+        this.thresholdNanos = threshold.toNanos();
+        this.capacity = capacity;
+        this.explain = explain;
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    //dataSource 는 쿼리를 실행한 풀, null 이면 실행 계획을 구하지 않는다
+    void check(String repository, String method, DataSource dataSource, String sql, Object[] parameters, long nanos) {
+        if (nanos < thresholdNanos || sql == null) {
+            return;
+        }
+        SlowQuery query = new SlowQuery(Instant.now(), repository, method, TimeUnit.NANOSECONDS.toMillis(nanos),
+                jpqlOf(sql), sqlOf(sql), redact(parameters));
+        log.warn("slow query {}ms > {} at {}.{}", query.getElapsedMillis(), threshold, repository, method);
+        synchronized (queries) {
+            if (queries.size() == capacity) {
+                queries.removeFirst();
+            }
+            queries.addLast(query);
+        }
+        if (explain && dataSource != null && query.getSql().regionMatches(true, 0, "select", 0, 6)) {
+            explainExecutor.execute(() -> query.setPlan(explain(dataSource, query.getSql(), parameters)));
+        }
+    }
+
+    //최근 것부터
+    public List<SlowQuery> getQueries() {
+        synchronized (queries) {
+            List<SlowQuery> recent = new ArrayList<>(queries);
+            Collections.reverse(recent);
+            return recent;
+        }
+    }
+
+    public void clear() {
+        synchronized (queries) {
+            queries.clear();
+        }
+    }
+
+    private static String explain(DataSource dataSource, String sql, Object[] parameters) {
+        try {
+            return String.join("\n", new JdbcTemplate(dataSource).queryForList("explain " + sql, String.class, parameters));
+        } catch (RuntimeException e) {
+            return "explain 실패: " + e.getMessage();
+        }
+    }
+
+    private static String jpqlOf(String sql) {
+        String trimmed = sql.trim();
+        if (!trimmed.startsWith("/*")) {
+            return null;
+        }
+        return trimmed.substring(2, trimmed.indexOf("*/")).trim();
+    }
+
+    private static String sqlOf(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.startsWith("/*")) {
+            trimmed = trimmed.substring(trimmed.indexOf("*/") + 2);
+        }
+        return trimmed.replaceAll("\\s+", " ").trim();
+    }
+
+    //바인딩 값에는 개인정보(회원명 등)가 들어가므로 타입만 남긴다
+    private static List<String> redact(Object[] parameters) {
+        return Arrays.stream(parameters)
+                .map(value -> value == null ? "null"
+                        : value instanceof String ? "String(" + ((String) value).length() + ")"
+                        : value.getClass().getSimpleName())
+                .collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//change_tombstone 은 지운 행마다 한 줄씩 계속 쌓이므로 retention 이 지난 기록을 interval 마다 지운다
+//변경 피드 소비자는 retention 안에 한 번은 읽어야 한다. 그보다 오래된 watermark 로 읽으면 그 사이의 삭제를 놓칠 수 있다.
+@Slf4j
+@Component
+class ChangeTombstonePurger {
+
+    private static final String PURGE = "delete from change_tombstone where deleted_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final ScheduledExecutorService scheduler;
+
+    ChangeTombstonePurger(JdbcTemplate jdbcTemplate,
+                          @Value("${change-feed.tombstone-retention:7d}") Duration retention,
+                          @Value("${change-feed.tombstone-purge-interval:1h}") Duration interval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-tombstone-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    //지운 기록 수
+    int purge() {
+        int purged = jdbcTemplate.update(PURGE, Timestamp.from(Instant.now().minus(retention)));
+        if (purged > 0) {
+            log.info("보존 기간({})이 지난 삭제 기록 {}건을 지웠습니다", retention, purged);
+        }
+        return purged;
+    }
+
+    //예외가 나도 다음 주기에 다시 시도한다 (scheduleWithFixedDelay 는 예외가 나면 멈춘다)
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            log.warn("삭제 기록을 정리하지 못했습니다", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
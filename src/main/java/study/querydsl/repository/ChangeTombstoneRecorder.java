@@ -0,0 +1,72 @@
+package study.querydsl.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+//회원/팀이 지워지면 같은 트랜잭션 안에서 change_tombstone 에 남긴다 (ChangeTombstone)
+//flush 중에는 엔티티를 persist 할 수 없으므로 JDBC 로 넣는다.
+//MemberBulkRepository.delete 는 직접 record 를 부르고, 그 밖의 JPQL 벌크 delete 로 지운 행은 남지 않는다.
+@Component
+@RequiredArgsConstructor
+class ChangeTombstoneRecorder implements PostDeleteEventListener {
+
+    private static final String INSERT = "insert into change_tombstone (entity_type, entity_id, deleted_at) values (?, ?, ?)";
+
+    private final EntityManagerFactory emf;
+
+    @PostConstruct
+    public void register() {
+        emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            record(event.getSession(), Member.class, List.of((Long) event.getId()));
+        } else if (entity instanceof Team) {
+            record(event.getSession(), Team.class, List.of((Long) event.getId()));
+        }
+    }
+
+    void record(SessionImplementor session, Class<?> entityType, Collection<Long> ids) {
+        //@UpdateTimestamp 와 같은 시계 (lastModified 와 같은 순서로 비교한다)
+        Timestamp deletedAt = Timestamp.from(Instant.now());
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (Long id : ids) {
+                    statement.setString(1, entityType.getSimpleName());
+                    statement.setLong(2, id);
+                    statement.setTimestamp(3, deletedAt);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
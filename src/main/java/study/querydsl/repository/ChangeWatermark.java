@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import study.querydsl.dto.ChangeFeed;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+//변경 피드에서 마지막으로 받은 (lastModified, id) 위치
+//(lastModified, id) 순서로 그 뒤만 읽으므로 lastModified 가 같은 행이 여러 개여도 빠짐없이 이어서 받는다.
+//커밋은 lastModified 순서대로 끝나지 않으므로 settleTime 보다 최근에 바뀐 행은 아직 주지 않는다.
+//lastModified 는 flush 시각이라, flush 하고 나서 커밋까지 settleTime 보다 오래 걸린 트랜잭션의 변경은 놓칠 수 있다.
+//(change-feed.settle-time 은 쓰기 트랜잭션의 최대 길이보다 길게 잡는다)
+//삭제는 change_tombstone 의 (deleted_at, id) 를 같은 순서로 합쳐서 준다. 삭제 기록은 보존 기간이 지나면 지운다 (ChangeTombstonePurger).
+class ChangeWatermark {
+
+    private static final String DELIMITER = "|";
+
+    //처음부터
+    private static final ChangeWatermark START = new ChangeWatermark(null, null);
+
+    private final Instant lastModified;
+    private final Long id;
+
+    private ChangeWatermark(Instant lastModified, Long id) {
+        this.lastModified = lastModified;
+        this.id = id;
+    }
+
+    static ChangeWatermark of(String watermark) {
+        if (watermark == null || watermark.isEmpty()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(watermark), StandardCharsets.UTF_8);
+            int delimiter = raw.indexOf(DELIMITER);
+            return new ChangeWatermark(Instant.parse(raw.substring(0, delimiter)), Long.valueOf(raw.substring(delimiter + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("올바르지 않은 watermark: " + watermark, e);
+        }
+    }
+
+    BooleanExpression after(DateTimePath<Instant> lastModifiedPath, NumberPath<Long> idPath) {
+        if (id == null) {
+            return null;
+        }
+        return lastModifiedPath.gt(lastModified)
+                .or(lastModifiedPath.eq(lastModified).and(idPath.gt(id)));
+    }
+
+    static int checkLimit(int limit) {
+        if (limit < 1) {
+            throw new InvalidRequestException("limit 은 1 이상이어야 합니다: " + limit);
+        }
+        return limit;
+    }
+
+    static BooleanExpression settled(DateTimePath<Instant> lastModifiedPath, Duration settleTime) {
+        return lastModifiedPath.loe(Instant.now().minus(settleTime));
+    }
+
+    //살아 있는 행과 삭제 기록을 각각 limit + 1 개씩 조회한 결과를 (lastModified, id) 순서로 합친다
+    <T> ChangeFeed<T> feed(List<T> rows, List<T> deleted, int limit, Function<T, Instant> lastModifiedOf, Function<T, Long> idOf) {
+        List<T> merged = new ArrayList<>(rows);
+        merged.addAll(deleted);
+        merged.sort(Comparator.comparing(lastModifiedOf).thenComparing(idOf));
+        return feed(merged, limit, lastModifiedOf, idOf);
+    }
+
+    //limit + 1 개를 조회한 결과로 다음 watermark 와 더 있는지를 정한다
+    <T> ChangeFeed<T> feed(List<T> rows, int limit, Function<T, Instant> lastModifiedOf, Function<T, Long> idOf) {
+        if (rows.isEmpty()) {
+            return new ChangeFeed<>(rows, encode(), false);
+        }
+        boolean hasMore = rows.size() > limit;
+        List<T> content = hasMore ? rows.subList(0, limit) : rows;
+        T last = content.get(content.size() - 1);
+        return new ChangeFeed<>(content, new ChangeWatermark(lastModifiedOf.apply(last), idOf.apply(last)).encode(), hasMore);
+    }
+
+    private String encode() {
+        if (id == null) {
+            return null;
+        }
+        String raw = lastModified + DELIMITER + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import study.querydsl.config.QueryGuardrails;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.List;
+
+//select 쿼리에 QueryGuardrails 를 거는 JPAQueryFactory (update/delete 는 그대로)
+//모든 select 에 타임아웃을 걸고, limit 을 주지 않은 fetch() 는 max-rows 개까지만 돌려준다.
+class GuardedQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final QueryGuardrails guardrails;
+
+    GuardedQueryFactory(EntityManager em, QueryGuardrails guardrails) {
+        super(em);
+        this.em = em;
+        this.guardrails = guardrails;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new GuardedQuery<Void>(em, JPAProvider.getTemplates(em), new DefaultQueryMetadata(), guardrails);
+    }
+
+    private static class GuardedQuery<T> extends JPAQuery<T> {
+
+        private final QueryGuardrails guardrails;
+        private boolean rowsLimited;
+
+        GuardedQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata, QueryGuardrails guardrails) {
+            super(em, templates, metadata);
+            this.guardrails = guardrails;
+        }
+
+        //count 쿼리와 limit 을 직접 준 쿼리는 타임아웃만 건다
+        @Override
+        protected Query createQuery(QueryModifiers modifiers, boolean forCount) {
+            rowsLimited = !forCount && (modifiers == null || modifiers.getLimit() == null);
+            return guardrails.apply(super.createQuery(modifiers, forCount), rowsLimited);
+        }
+
+        @Override
+        public List<T> fetch() {
+            List<T> rows = super.fetch();
+            return rowsLimited ? guardrails.truncate(rows) : rows;
+        }
+
+        @Override
+        public JPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+            GuardedQuery<T> query = new GuardedQuery<>(entityManager, templates, getMetadata().clone(), guardrails);
+            query.clone(this);
+            return query;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package study.querydsl.repository;
+
+//요청 값(watermark, cursor, 정렬 속성, limit ..)이 잘못된 경우. ApiExceptionHandler 가 400 으로 돌려준다
+//그 밖의 IllegalArgumentException 은 프로그래밍 오류이므로 500 으로 둔다
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
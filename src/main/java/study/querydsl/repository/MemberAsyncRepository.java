@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.config.QueryGuardrails;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.metrics.QueryScope;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+//searchPageComplex 의 content 쿼리와 count 쿼리를 동시에 실행한다
+//쿼리마다 읽기 전용 트랜잭션을 따로 열기 때문에 각자 다른 EntityManager, 다른 커넥션을 쓴다.
+//동시에 돌리므로 "마지막 페이지면 count 생략" 은 못 하고 count 는 항상 (캐시가 없으면) 실행한다.
+//풀이 가득 차면 요청 스레드에서 직접 실행해서(CallerRuns) 순차 실행으로 돌아간다.
+@Repository
+public class MemberAsyncRepository {
+
+    private final GuardedQueryFactory queryFactory;
+    private final QueryGuardrails guardrails;
+    private final MemberCountQueryBuilder countQueryBuilder;
+    private final MemberSearchPlanCache planCache;
+    private final MemberCountCache countCache;
+    private final MemberSearchResultCache resultCache;
+    private final TransactionTemplate readOnly;
+    private final ThreadPoolExecutor executor;
+
+    public MemberAsyncRepository(EntityManager em,
+                                 PlatformTransactionManager transactionManager,
+                                 MemberSearchPlanCache planCache,
+                                 MemberCountCache countCache,
+                                 MemberSearchResultCache resultCache,
+                                 @Value("${member.async.pool-size:8}") int poolSize,
+                                 @Value("${member.async.queue-capacity:100}") int queueCapacity,
+                                 QueryGuardrails guardrails) {
+        this.queryFactory = new GuardedQueryFactory(em, guardrails);
+        this.guardrails = guardrails;
+        this.countQueryBuilder = new MemberCountQueryBuilder(em, queryFactory);
+        this.planCache = planCache;
+        this.countCache = countCache;
+        this.resultCache = resultCache;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "member-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageComplex(MemberSearchCondition condition, Pageable requested) {
+        Pageable pageable = guardrails.clamp(requested);
+        return resultCache.pageAsync("complex:" + PagingStrategy.OFFSET, condition, pageable, () -> {
+            CompletableFuture<List<MemberTeamDto>> content = inTransaction(
+                    () -> planCache.search(condition, pageable.getOffset(), pageable.getPageSize(), pageable.getSort()));
+            CompletableFuture<Long> total = inTransaction(
+                    () -> countCache.count(condition, () -> countQueryBuilder.count(condition).fetchOne()));
+
+            return content.thenCombine(total, (rows, count) -> new PageImpl<>(rows, pageable, count));
+        });
+    }
+
+    private <T> CompletableFuture<T> inTransaction(Supplier<T> query) {
+        //member-query-* 스레드에서 실행한 쿼리도 이 repository 메서드의 메트릭, 느린 쿼리 기록에 들어가도록
+        return CompletableFuture.supplyAsync(QueryScope.propagate(() -> readOnly.execute(status -> query.get())), executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
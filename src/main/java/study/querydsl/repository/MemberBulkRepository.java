@@ -0,0 +1,196 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.event.BulkWriteEvent;
+import study.querydsl.event.EntityWriteEvent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+//조건에 맞는 회원을 id 순서로 chunkSize 씩 나눠서 벌크 update/delete 한다
+//한 번에 전체를 update 하면 테이블 전체에 락이 오래 잡히므로 chunk 마다 트랜잭션을 나누고 pause 만큼 쉰다.
+//이미 트랜잭션 안에서 호출하면 그 트랜잭션에 참여하므로 chunk 별 커밋은 트랜잭션 밖에서 호출할 때만 된다.
+@Repository
+public class MemberBulkRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final ChangeTombstoneRecorder tombstoneRecorder;
+    private final int chunkSize;
+    private final Duration pause;
+
+    public MemberBulkRepository(EntityManager em,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher publisher,
+                                ChangeTombstoneRecorder tombstoneRecorder,
+                                @Value("${member.bulk.chunk-size:1000}") int chunkSize,
+                                @Value("${member.bulk.pause:50ms}") Duration pause) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+        this.tombstoneRecorder = tombstoneRecorder;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+    }
+
+    //ex) update(member.age.lt(28), update -> update.set(member.username, "비회원"))
+    public long update(Predicate where, Consumer<JPAUpdateClause> assignments) {
+        return inChunks(where, EntityWriteEvent.Type.UPDATE, ids -> {
+            JPAUpdateClause update = queryFactory.update(member);
+            assignments.accept(update);
+            //벌크 update 는 @Version, @UpdateTimestamp 를 거치지 않으므로 변경 피드에 나오도록 직접 올린다
+            update.set(member.version, member.version.add(1L))
+                    .set(member.lastModified, Instant.now());
+            return update.where(member.id.in(ids)).execute();
+        });
+    }
+
+    //벌크 delete 는 ChangeTombstoneRecorder 를 거치지 않으므로 변경 피드에 나오도록 직접 남긴다
+    public long delete(Predicate where) {
+        return inChunks(where, EntityWriteEvent.Type.DELETE, ids -> {
+            long deleted = queryFactory
+                    .delete(member)
+                    .where(member.id.in(ids))
+                    .execute();
+            tombstoneRecorder.record(em.unwrap(SessionImplementor.class), Member.class, ids);
+            return deleted;
+        });
+    }
+
+    private long inChunks(Predicate where, EntityWriteEvent.Type type, ChunkAction action) {
+        long affected = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            Chunk chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = lockNextChunk(where, afterId);
+                if (ids.isEmpty()) {
+                    return new Chunk(ids, 0);
+                }
+                List<MemberTeamDto> previousRows = rows(member.id.in(ids)).orderBy(member.id.asc()).fetch();
+                detach(ids);
+                long count = action.execute(ids);
+                evictSecondLevelCache(ids);
+                //검색 결과 캐시가 어떤 조건을 비울지 판단할 수 있도록 변경 후 상태도 같이 보낸다
+                List<MemberTeamDto> currentRows = type == EntityWriteEvent.Type.DELETE
+                        ? Collections.emptyList()
+                        : rows(member.id.in(ids)).fetch();
+                publisher.publishEvent(new BulkWriteEvent(Member.class, type, ids, previousRows, currentRows));
+                return new Chunk(ids, count);
+            });
+
+            affected += chunk.affected;
+            if (chunk.ids.size() < chunkSize || !sleep()) {
+                return affected;
+            }
+            lastId = chunk.ids.get(chunk.ids.size() - 1);
+        }
+    }
+
+    //조건은 team 경로를 쓸 수 있으므로(벌크 update 는 조인 불가) 대상 회원을 먼저 뽑고 id 로 update 한다
+    //뽑은 회원에 select ... for update 로 락을 걸어서, update 전에 다른 트랜잭션이 바꿔 조건에서 빠진 회원을 건드리지 않게 한다
+    //팀은 서브쿼리에서만 조인한다. 잠그는 쿼리에서 조인하면 팀 행까지 잠겨서 같은 팀의 다른 회원을 바꾸는 트랜잭션도 기다린다.
+    //이벤트에 실을 변경 전 상태(팀 포함)는 잠근 뒤에 id 로 따로 읽는다
+    private List<Long> lockNextChunk(Predicate where, long afterId) {
+        QMember locked = new QMember("locked");
+        JPAQuery<Long> candidates = MemberTeamJoinPlanner.plan(null, where)
+                .applyTo(new JPAQuery<Void>().select(member.id).from(member))
+                .where(where, member.id.gt(afterId));
+
+        return queryFactory
+                .select(locked.id)
+                .from(locked)
+                .where(locked.id.gt(afterId), locked.id.in(candidates))
+                .orderBy(locked.id.asc())
+                .limit(chunkSize)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .fetch();
+    }
+
+    private JPAQuery<MemberTeamDto> rows(Predicate... where) {
+        QMemberTeamDto projection = new QMemberTeamDto(
+                member.id.as("memberId"),
+                member.username,
+                member.age,
+                team.id.as("teamId"),
+                team.name.as("teamName"));
+
+        return MemberTeamJoinPlanner.plan(projection, where)
+                .applyTo(queryFactory.select(projection).from(member))
+                .where(where);
+    }
+
+    //영속성 컨텍스트에 올라와 있는 회원만 골라서 detach (벌크 연산 후 옛날 값을 보지 않도록)
+    private void detach(List<Long> ids) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        //벌크 연산 전에 변경 내용을 반영해야 detach 해도 잃어버리지 않는다
+        em.flush();
+        for (Long id : ids) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                em.detach(managed);
+            }
+        }
+    }
+
+    private void evictSecondLevelCache(List<Long> ids) {
+        for (Long id : ids) {
+            em.getEntityManagerFactory().getCache().evict(Member.class, id);
+        }
+    }
+
+    private boolean sleep() {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        long execute(List<Long> ids);
+    }
+
+    private static class Chunk {
+
+        private final List<Long> ids;
+        private final long affected;
+
+        Chunk(List<Long> ids, long affected) {
+            this.ids = ids;
+            this.affected = affected;
+        }
+    }
+}
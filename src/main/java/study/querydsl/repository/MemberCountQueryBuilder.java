@@ -0,0 +1,76 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.spi.PositionalParameterInformation;
+import org.hibernate.hql.spi.QueryTranslator;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.Collections;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.MemberSearchPredicates.searchPredicates;
+
+//검색 조건으로 count 쿼리를 만든다
+//fetchCount() 처럼 content 쿼리를 count 쿼리로 바꾸지 않고 select count(member.id) 를 직접 만든다.
+//member -> team 은 다대일이라 조인해도 row 수가 같으므로 team 조건이 없으면 조인을 뺀다. (MemberTeamJoinPlanner)
+class MemberCountQueryBuilder {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    MemberCountQueryBuilder(EntityManager em, JPAQueryFactory queryFactory) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+    }
+
+    JPAQuery<Long> count(MemberSearchCondition condition) {
+        return query(member.id.count(), condition);
+    }
+
+    JPAQuery<Long> ids(MemberSearchCondition condition) {
+        return query(member.id, condition);
+    }
+
+    //limit 개까지만 센다: select count(*) from (ids(condition) 의 SQL limit ?) capped
+    //JPQL 은 from 절 서브쿼리가 안 되므로 ids 쿼리를 하이버네이트로 SQL 로 번역해서 감싼다 (id 를 애플리케이션으로 가져와서 세지 않도록)
+    //조건과 조인은 ids, count 와 같은 쿼리에서 나오므로 content 쿼리와 같은 행을 센다. 결과는 Number
+    Query cappedCount(MemberSearchCondition condition, long limit) {
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(ids(condition).getMetadata(), false, null);
+        List<Object> constants = serializer.getConstants();
+
+        QueryTranslator translator = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getQueryPlanCache()
+                .getHQLQueryPlan(serializer.toString(), false, Collections.emptyMap())
+                .getTranslators()[0];
+        Query query = em.createNativeQuery("select count(*) from (" + translator.getSQLString() + " limit ?) capped");
+
+        //JPQL 의 ?1, ?2 가 SQL 의 몇 번째 ? 로 번역됐는지 (sourceLocations 는 0 부터)
+        int parameters = 0;
+        for (PositionalParameterInformation parameter
+                : translator.getParameterTranslations().getPositionalParameterInformationMap().values()) {
+            for (int location : parameter.getSourceLocations()) {
+                query.setParameter(location + 1, constants.get(parameter.getLabel() - 1));
+                parameters++;
+            }
+        }
+        query.setParameter(parameters + 1, limit);
+        return query;
+    }
+
+    private JPAQuery<Long> query(Expression<Long> projection, MemberSearchCondition condition) {
+        Predicate[] where = searchPredicates(condition);
+        return MemberTeamJoinPlanner.plan(projection, where)
+                .applyTo(queryFactory.select(projection).from(member))
+                .where(where);
+    }
+}
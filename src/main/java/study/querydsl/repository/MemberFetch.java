@@ -0,0 +1,25 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import study.querydsl.entity.Member;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+//Member 엔티티를 조회할 때 member.team 을 가져오는 방법
+public enum MemberFetch {
+
+    //team 은 프록시로 두고, 처음 접근할 때 default_batch_fetch_size 만큼 in 쿼리로 한꺼번에 초기화한다 (쿼리 1 + 1)
+    LAZY,
+
+    //team 을 fetch join 해서 쿼리 한 번에 가져온다 (team 을 꼭 쓰는 화면용)
+    TEAM;
+
+    JPAQuery<Member> applyTo(JPAQuery<Member> query) {
+        if (this == TEAM) {
+            //팀이 없는 회원도 나와야 하므로 left join
+            return query.leftJoin(member.team, team).fetchJoin();
+        }
+        return query;
+    }
+}
@@ -2,11 +2,15 @@ package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.config.QueryGuardrails;
 import study.querydsl.dto.MemberDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -14,10 +18,14 @@ import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.metrics.ConnectionLeakDetector;
 
 import javax.persistence.EntityManager;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
@@ -27,12 +35,27 @@ import static study.querydsl.entity.QTeam.*;
 @Repository
 public class MemberJpaRepository {
 
-    private final EntityManager em;
-    private final JPAQueryFactory queryFactory;
+    private static final int STREAM_FETCH_SIZE = 500;
 
-    public MemberJpaRepository(EntityManager em) {
+    private final EntityManager em;
+    private final GuardedQueryFactory queryFactory;
+    private final QueryGuardrails guardrails;
+    private final MemberSearchPlanCache planCache;
+    private final MemberSearchResultCache resultCache;
+    private final ReactiveMemberSearch reactiveSearch;
+    private final TransactionTemplate readOnly;
+
+    public MemberJpaRepository(EntityManager em, PlatformTransactionManager transactionManager,
+                               MemberSearchPlanCache planCache, MemberSearchResultCache resultCache,
+                               ReactiveMemberSearch reactiveSearch, QueryGuardrails guardrails) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = new GuardedQueryFactory(em, guardrails);
+        this.guardrails = guardrails;
+        this.planCache = planCache;
+        this.resultCache = resultCache;
+        this.reactiveSearch = reactiveSearch;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
     }
 
     public void save(Member member) {
@@ -45,13 +68,18 @@ public class MemberJpaRepository {
     }
 
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class)
-                .getResultList();
+        return guardrails.truncate(guardrails.apply(em.createQuery("select m from Member m", Member.class), true)
+                .getResultList());
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl() {
-        return queryFactory
-                .selectFrom(member)
+        return findAll_Querydsl(MemberFetch.LAZY);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Member> findAll_Querydsl(MemberFetch fetch) {
+        return fetch.applyTo(queryFactory.selectFrom(member))
                 .fetch();
     }
 
@@ -84,50 +112,44 @@ public class MemberJpaRepository {
             builder.and(member.age.loe(condition.getAgeLoe()));
         }
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
+        QMemberTeamDto projection = new QMemberTeamDto(
+                member.id.as("memberId"),
+                member.username,
+                member.age,
+                team.id.as("teamId"),
+                team.name.as("teamName"));
+
+        return MemberTeamJoinPlanner.plan(projection, builder)
+                .applyTo(queryFactory.select(projection).from(member))
                 .where(builder)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+        return resultCache.search(condition, guardrails.maxRows(), () -> planCache.search(condition));
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    //search 와 같은 조건이지만 결과를 List 로 모으지 않고 한 건씩 action 에 넘긴다 (대용량 내보내기용)
+    //JDBC 는 STREAM_FETCH_SIZE 씩 가져온다. DTO 프로젝션이라 영속성 컨텍스트에 쌓이는 엔티티는 없다.
+    //응답을 다 쓸 때까지 커넥션을 쥐고 있으므로 트랜잭션을 누수 감지 밖(longRunning)에서 연다
+    public long searchStream(MemberSearchCondition condition, Consumer<MemberTeamDto> action) {
+        return ConnectionLeakDetector.longRunning(() -> readOnly.execute(status -> {
+            long count = 0;
+            try (Stream<MemberTeamDto> stream = planCache.stream(condition, STREAM_FETCH_SIZE)) {
+                Iterator<MemberTeamDto> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    action.accept(iterator.next());
+                    count++;
+                }
+            }
+            return count;
+        }));
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    //searchStream 의 non-blocking 버전, 구독자가 request(n) 한 만큼만 읽어서 보낸다 (backpressure)
+    //JDBC 호출은 bounded 스케줄러 스레드에서만 하고, 결과 캐시는 거치지 않는다
+    public Flux<MemberTeamDto> searchReactive(MemberSearchCondition condition) {
+        return reactiveSearch.search(condition, STREAM_FETCH_SIZE);
     }
 }
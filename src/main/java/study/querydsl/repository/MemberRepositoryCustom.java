@@ -1,15 +1,43 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.ChangeFeed;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberChangeDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, PagingStrategy strategy);
+    EstimatedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, long countLimit);
+    EstimatedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, long countLimit, PagingStrategy strategy);
+    CursorSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, String cursor, int size);
+    CursorSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, String cursor, int size, Sort sort);
+    //watermark 이후에 추가/변경/삭제된 회원을 변경 순서대로 limit 개까지
+    //삭제 기록은 change-feed.tombstone-retention 동안만 남으므로 그보다 오래된 watermark 는 삭제를 놓칠 수 있다
+    ChangeFeed<MemberChangeDto> findChangedSince(String watermark, int limit);
+    //QuerydslPredicateExecutor.findAll(Predicate) 에 team fetch join 여부를 고를 수 있게 한 것
+    List<Member> findAll(Predicate predicate, MemberFetch fetch);
+
+    //QuerydslPredicateExecutor 메서드를 가려서 조건을 PredicateOptimizer 로 정리한 뒤 실행한다 (MemberRepositoryImpl)
+    Optional<Member> findOne(Predicate predicate);
+    Iterable<Member> findAll(Predicate predicate);
+    Iterable<Member> findAll(Predicate predicate, Sort sort);
+    Iterable<Member> findAll(Predicate predicate, OrderSpecifier<?>... orders);
+    Page<Member> findAll(Predicate predicate, Pageable pageable);
+    long count(Predicate predicate);
+    boolean exists(Predicate predicate);
 
 }
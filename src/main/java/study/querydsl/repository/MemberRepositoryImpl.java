@@ -1,124 +1,330 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.jpa.impl.JPAQuery;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.data.jpa.repository.support.QuerydslJpaPredicateExecutor;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.config.QueryGuardrails;
+import study.querydsl.dto.ChangeFeed;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberChangeDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberChangeDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 
 import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QChangeTombstone.changeTombstone;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.searchPredicates;
 
+//조회만 하므로 replica 가 있으면 replica 에서 읽는다 (ReplicaRoutingConfig)
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
-    private final JPAQueryFactory queryFactory;
+    private final GuardedQueryFactory queryFactory;
+    private final QueryGuardrails guardrails;
+    private final MemberCountQueryBuilder countQueryBuilder;
+    private final MemberCountCache countCache;
+    private final MemberSearchPlanCache planCache;
+    private final MemberSearchResultCache resultCache;
+    private final Duration changeFeedSettleTime;
+    //QuerydslPredicateExecutor 기본 구현, 조건을 PredicateOptimizer 로 정리한 뒤 넘긴다
+    private final QuerydslPredicateExecutor<Member> predicateExecutor;
 
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, MemberSearchPlanCache planCache,
+                                MemberSearchResultCache resultCache,
+                                @Value("${change-feed.settle-time:1s}") Duration changeFeedSettleTime,
+                                QueryGuardrails guardrails) {
+        this.queryFactory = new GuardedQueryFactory(em, guardrails);
+        this.guardrails = guardrails;
+        this.countQueryBuilder = new MemberCountQueryBuilder(em, queryFactory);
+        this.countCache = countCache;
+        this.planCache = planCache;
+        this.resultCache = resultCache;
+        this.changeFeedSettleTime = changeFeedSettleTime;
+        this.predicateExecutor = new QuerydslJpaPredicateExecutor<>(
+                JpaEntityInformationSupport.getEntityInformation(Member.class, em), em, SimpleEntityPathResolver.INSTANCE, null);
     }
 
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        return resultCache.search(condition, guardrails.maxRows(), () -> planCache.search(condition));
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable requested) {
+        Pageable pageable = guardrails.clamp(requested);
+        return resultCache.page("simple", condition, pageable, () -> {
+            List<MemberTeamDto> content = searchContent(condition, pageable);
+            long total = countQueryBuilder.count(condition).fetchOne();
+
+            return new PageImpl<>(content, pageable, total);
+        });
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return searchPageComplex(condition, pageable, PagingStrategy.OFFSET);
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable requested, PagingStrategy strategy) {
+        Pageable pageable = guardrails.clamp(requested);
+        return resultCache.page("complex:" + strategy, condition, pageable, () -> {
+            List<MemberTeamDto> content = searchContent(condition, pageable, strategy);
+
+            JPAQuery<Long> countQuery = countQueryBuilder.count(condition);
+
+            return PageableExecutionUtils.getPage(content, pageable, () -> countCache.count(condition, countQuery::fetchOne));
+//            return new PageImpl<>(content, pageable, total);
+        });
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    @Override
+    public EstimatedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, long countLimit) {
+        return searchPageComplex(condition, pageable, countLimit, PagingStrategy.OFFSET);
     }
 
     @Override
-    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+    public EstimatedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable requested, long requestedCountLimit,
+                                                          PagingStrategy strategy) {
+        Pageable pageable = guardrails.clamp(requested);
+        long countLimit = guardrails.clampCountLimit(requestedCountLimit);
+        return resultCache.page("estimated:" + countLimit + ":" + strategy, condition, pageable,
+                () -> searchPageEstimated(condition, pageable, countLimit, strategy));
+    }
+
+    private EstimatedPage<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable, long countLimit,
+                                                             PagingStrategy strategy) {
+        List<MemberTeamDto> content = searchContent(condition, pageable, strategy);
+
+        //최소한 현재 페이지 다음 행까지는 세야 다음 페이지 여부를 알 수 있다
+        //offset 은 클라이언트가 정하므로(?page=1000000) 늘린 뒤에도 max-count-limit 으로 다시 자른다
+        long limit = guardrails.clampCountLimit(Math.max(countLimit, pageable.getOffset() + pageable.getPageSize()));
+        long total = countCache.count(condition, limit, () -> ((Number) guardrails
+                .apply(countQueryBuilder.cappedCount(condition, limit + 1), false)
+                .getSingleResult()).longValue());
+
+        boolean capped = total > limit;
+        return new EstimatedPage<>(content, pageable, capped ? limit : total, capped);
+    }
+
+    private List<MemberTeamDto> searchContent(MemberSearchCondition condition, Pageable pageable) {
+        return searchContent(condition, pageable, PagingStrategy.OFFSET);
+    }
+
+    private List<MemberTeamDto> searchContent(MemberSearchCondition condition, Pageable pageable, PagingStrategy strategy) {
+        if (strategy == PagingStrategy.ID_FIRST) {
+            return searchContentByIds(condition, pageable);
+        }
+        return planCache.search(condition, pageable.getOffset(), pageable.getPageSize(), pageable.getSort());
+    }
+
+    //offset 만큼 버리는 행은 id 만 읽고, team 조인과 dto 생성은 실제로 보여줄 pageSize 개만 한다
+    private List<MemberTeamDto> searchContentByIds(MemberSearchCondition condition, Pageable pageable) {
+        List<Long> ids = countQueryBuilder.ids(condition)
+                .orderBy(MemberSearchOrder.of(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetchResults();
+                .fetch();
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+        //in 절은 순서를 보장하지 않으므로 1단계의 순서대로 다시 맞춘다
+        Map<Long, MemberTeamDto> byId = searchQuery(new MemberSearchCondition(), member.id.in(ids))
+                .fetch()
+                .stream()
+                .collect(Collectors.toMap(MemberTeamDto::getMemberId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition, Predicate... extra) {
+        QMemberTeamDto projection = new QMemberTeamDto(
+                member.id.as("memberId"),
+                member.username,
+                member.age,
+                team.id.as("teamId"),
+                team.name.as("teamName"));
+        Predicate[] where = searchPredicates(condition);
 
-        return new PageImpl<>(content, pageable, total);
+        return MemberTeamJoinPlanner.plan(projection, where)
+                .applyTo(queryFactory.select(projection).from(member))
+                .where(where)
+                .where(extra);
     }
 
     @Override
-    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
+    public CursorSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, String cursor, int size) {
+        return searchSlice(condition, cursor, size, Sort.unsorted());
+    }
+
+    @Override
+    public CursorSlice<MemberTeamDto> searchSlice(MemberSearchCondition condition, String cursor, int requestedSize, Sort sort) {
+        //size 가 0 이면 다음 cursor 를 만들 마지막 행이 없다
+        if (requestedSize < 1) {
+            throw new InvalidRequestException("size 는 1 이상이어야 합니다: " + requestedSize);
+        }
+        int size = guardrails.clampPageSize(requestedSize);
+        MemberSearchCursor position = MemberSearchCursor.of(cursor, sort);
+
+        //size + 1 개를 조회해서 다음 페이지가 있는지 판단한다 (count 쿼리 없음)
+        List<MemberTeamDto> content = searchQuery(condition, position.seek())
+                .orderBy(position.orderBy())
+                .limit(size + 1)
+                .fetch();
+
+        if (content.size() <= size) {
+            return new CursorSlice<>(content, size, null);
+        }
+        content = content.subList(0, size);
+        return new CursorSlice<>(content, size, position.next(content.get(size - 1)));
+    }
+
+    //(last_modified, member_id) 인덱스 순서대로 watermark 이후만 읽는다 (idx_member_last_modified)
+    //replica 는 datasource.replica.max-lag 만큼 늦을 수 있고, 그게 settle-time 보다 길면 watermark 가 아직 복제되지 않은 변경을 건너뛴다
+    //그래서 변경 피드는 readOnly 가 아닌 트랜잭션으로 primary 에서 읽는다 (ReplicaRoutingDataSource)
+    @Override
+    @Transactional
+    public ChangeFeed<MemberChangeDto> findChangedSince(String watermark, int requestedLimit) {
+        int limit = guardrails.clampPageSize(ChangeWatermark.checkLimit(requestedLimit));
+        ChangeWatermark position = ChangeWatermark.of(watermark);
+
+        List<MemberChangeDto> rows = queryFactory
+                .select(new QMemberChangeDto(
+                        member.id,
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
+                        member.team.id,
+                        member.version,
+                        member.lastModified))
                 .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .where(position.after(member.lastModified, member.id),
+                        ChangeWatermark.settled(member.lastModified, changeFeedSettleTime))
+                .orderBy(member.lastModified.asc(), member.id.asc())
+                .limit(limit + 1)
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
-
-        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
-//        return new PageImpl<>(content, pageable, total);
+        List<MemberChangeDto> deleted = queryFactory
+                .select(new QMemberChangeDto(changeTombstone.entityId, changeTombstone.deletedAt))
+                .from(changeTombstone)
+                .where(changeTombstone.entityType.eq(Member.class.getSimpleName()),
+                        position.after(changeTombstone.deletedAt, changeTombstone.entityId),
+                        ChangeWatermark.settled(changeTombstone.deletedAt, changeFeedSettleTime))
+                .orderBy(changeTombstone.deletedAt.asc(), changeTombstone.entityId.asc())
+                .limit(limit + 1)
+                .fetch();
+
+        return position.feed(rows, deleted, limit, MemberChangeDto::getLastModified, MemberChangeDto::getMemberId);
+    }
+
+    @Override
+    public List<Member> findAll(Predicate predicate, MemberFetch fetch) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return Collections.emptyList();
+        }
+        return fetch.applyTo(queryFactory.selectFrom(member))
+                .where(optimized)
+                .fetch();
+    }
+
+    //만족할 수 없는 조건이면 쿼리를 보내지 않는다
+    @Override
+    public Optional<Member> findOne(Predicate predicate) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return Optional.empty();
+        }
+        return predicateExecutor.findOne(nonNull(optimized));
+    }
+
+    @Override
+    public Iterable<Member> findAll(Predicate predicate) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return Collections.emptyList();
+        }
+        return predicateExecutor.findAll(nonNull(optimized));
+    }
+
+    @Override
+    public Iterable<Member> findAll(Predicate predicate, Sort sort) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return Collections.emptyList();
+        }
+        return predicateExecutor.findAll(nonNull(optimized), sort);
+    }
+
+    @Override
+    public Iterable<Member> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return Collections.emptyList();
+        }
+        return predicateExecutor.findAll(nonNull(optimized), orders);
+    }
+
+    @Override
+    public Page<Member> findAll(Predicate predicate, Pageable pageable) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return PageableExecutionUtils.getPage(Collections.emptyList(), pageable, () -> 0L);
+        }
+        return predicateExecutor.findAll(nonNull(optimized), pageable);
+    }
+
+    @Override
+    public long count(Predicate predicate) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return 0;
+        }
+        return predicateExecutor.count(nonNull(optimized));
+    }
+
+    @Override
+    public boolean exists(Predicate predicate) {
+        Predicate optimized = PredicateOptimizer.optimize(predicate);
+        if (optimized == PredicateOptimizer.UNSATISFIABLE) {
+            return false;
+        }
+        return predicateExecutor.exists(nonNull(optimized));
+    }
+
+    //기본 구현은 null 조건을 받지 않으므로 조건이 없으면 빈 BooleanBuilder 로 넘긴다
+    private static Predicate nonNull(Predicate optimized) {
+        return optimized == null ? new BooleanBuilder() : optimized;
     }
 }
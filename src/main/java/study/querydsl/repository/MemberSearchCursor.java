@@ -0,0 +1,152 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static study.querydsl.entity.QMember.member;
+
+//keyset(seek) 페이징용 커서
+//offset 대신 "마지막으로 본 (정렬키, member.id)" 이후만 조회하기 때문에 몇 번째 페이지든 비용이 같다.
+//정렬키가 유일하지 않으면(age, username) member.id 를 붙여서 복합키로 비교한다.
+//username 은 null 일 수 있으므로 null 을 가장 작은 값으로 보고(asc 는 nulls first, desc 는 nulls last) 그 순서대로 이어서 읽는다.
+class MemberSearchCursor {
+
+    private static final String DELIMITER = "|";
+    //cursor 의 값 앞에 붙인다, 값이 null 이면 아무것도 쓰지 않는다 (빈 문자열과 구분)
+    private static final String VALUE_PREFIX = "=";
+
+    enum Key {
+        ID("id"), AGE("age"), USERNAME("username");
+
+        private final String property;
+
+        Key(String property) {
+            this.property = property;
+        }
+
+        static Key of(String property) {
+            for (Key key : values()) {
+                if (key.property.equals(property)) {
+                    return key;
+                }
+            }
+            throw new InvalidRequestException("cursor 정렬을 지원하지 않는 속성: " + property);
+        }
+    }
+
+    private final Key key;
+    private final boolean asc;
+    //첫 페이지면 lastId 가 null, lastValue 는 마지막 행의 정렬키가 null 이어도 null
+    private final String lastValue;
+    private final Long lastId;
+
+    private MemberSearchCursor(Key key, boolean asc, String lastValue, Long lastId) {
+        this.key = key;
+        this.asc = asc;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    //정렬은 하나만 받는다 (member.id 는 항상 뒤에 붙는다)
+    static MemberSearchCursor of(String cursor, Sort sort) {
+        if (sort.stream().count() > 1) {
+            throw new InvalidRequestException("cursor 정렬은 하나만 지정할 수 있습니다: " + sort);
+        }
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc(Key.ID.property));
+        Key key = Key.of(order.getProperty());
+        if (cursor == null || cursor.isEmpty()) {
+            return new MemberSearchCursor(key, order.isAscending(), null, null);
+        }
+
+        MemberSearchCursor decoded = decode(cursor);
+        if (sort.isSorted() && (decoded.key != key || decoded.asc != order.isAscending())) {
+            throw new InvalidRequestException("cursor 와 정렬 조건이 다릅니다: " + sort);
+        }
+        return decoded;
+    }
+
+    private static MemberSearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            //username 에 구분자가 들어갈 수 있으므로 값은 첫 번째와 마지막 구분자 사이 전체
+            int first = raw.indexOf(DELIMITER);
+            int last = raw.lastIndexOf(DELIMITER);
+            String ordering = raw.substring(0, first);
+            int dot = ordering.lastIndexOf('.');
+            Key key = Key.of(ordering.substring(0, dot));
+            boolean asc = "asc".equals(ordering.substring(dot + 1));
+            String value = raw.substring(first + 1, last);
+            if (!value.isEmpty() && !value.startsWith(VALUE_PREFIX)) {
+                throw new InvalidRequestException("cursor 값 형식이 다릅니다: " + value);
+            }
+            String lastValue = value.isEmpty() ? null : value.substring(VALUE_PREFIX.length());
+            return new MemberSearchCursor(key, asc, lastValue, Long.valueOf(raw.substring(last + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("올바르지 않은 cursor: " + cursor, e);
+        }
+    }
+
+    String next(MemberTeamDto last) {
+        String value = valueOf(last);
+        String raw = key.property + "." + (asc ? "asc" : "desc")
+                + DELIMITER + (value == null ? "" : VALUE_PREFIX + value) + DELIMITER + last.getMemberId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String valueOf(MemberTeamDto dto) {
+        switch (key) {
+            case AGE:
+                return String.valueOf(dto.getAge());
+            case USERNAME:
+                return dto.getUsername();
+            default:
+                return String.valueOf(dto.getMemberId());
+        }
+    }
+
+    BooleanExpression seek() {
+        if (lastId == null) {
+            return null;
+        }
+        switch (key) {
+            case AGE:
+                int age = Integer.parseInt(lastValue);
+                return asc
+                        ? member.age.gt(age).or(member.age.eq(age).and(member.id.gt(lastId)))
+                        : member.age.lt(age).or(member.age.eq(age).and(member.id.lt(lastId)));
+            case USERNAME:
+                return seekUsername();
+            default:
+                return asc ? member.id.gt(lastId) : member.id.lt(lastId);
+        }
+    }
+
+    //null 은 가장 작은 값: asc 면 null 들이 맨 앞, desc 면 맨 뒤
+    private BooleanExpression seekUsername() {
+        if (lastValue == null) {
+            BooleanExpression sameNull = member.username.isNull().and(asc ? member.id.gt(lastId) : member.id.lt(lastId));
+            return asc ? sameNull.or(member.username.isNotNull()) : sameNull;
+        }
+        BooleanExpression after = asc
+                ? member.username.gt(lastValue).or(member.username.eq(lastValue).and(member.id.gt(lastId)))
+                : member.username.lt(lastValue).or(member.username.eq(lastValue).and(member.id.lt(lastId)));
+        return asc ? after : after.or(member.username.isNull());
+    }
+
+    OrderSpecifier<?>[] orderBy() {
+        OrderSpecifier<Long> byId = asc ? member.id.asc() : member.id.desc();
+        switch (key) {
+            case AGE:
+                return new OrderSpecifier[]{asc ? member.age.asc() : member.age.desc(), byId};
+            case USERNAME:
+                return new OrderSpecifier[]{asc ? member.username.asc().nullsFirst() : member.username.desc().nullsLast(), byId};
+            default:
+                return new OrderSpecifier[]{byId};
+        }
+    }
+}
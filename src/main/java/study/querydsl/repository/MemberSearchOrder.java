@@ -0,0 +1,53 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+
+//offset 페이징(PagingStrategy)의 정렬: Pageable 정렬 다음에 member.id 를 붙인다
+//정렬 값이 같은 행이 여러 개여도 순서가 하나로 정해져야 페이지끼리 겹치거나 빠지는 행이 없고, OFFSET 과 ID_FIRST 가 같은 페이지를 돌려준다.
+//ID_FIRST 1단계는 team 을 조인하지 않을 수 있으므로 member 속성으로만 정렬한다.
+final class MemberSearchOrder {
+
+    private MemberSearchOrder() {
+    }
+
+    static OrderSpecifier<?>[] of(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        //같은 속성이 여러 번 오면 처음 것만 쓴다 (뒤의 것은 의미가 없다)
+        Set<String> seen = new LinkedHashSet<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = path(order.getProperty());
+            if (!seen.add(order.getProperty())) {
+                continue;
+            }
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+            //id 는 유일하므로 뒤의 정렬은 쓰이지 않는다
+            if (path == member.id) {
+                return orders.toArray(new OrderSpecifier[0]);
+            }
+        }
+        orders.add(member.id.asc());
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+
+    private static ComparableExpressionBase<?> path(String property) {
+        switch (property) {
+            case "id":
+                return member.id;
+            case "age":
+                return member.age;
+            case "username":
+                return member.username;
+            default:
+                throw new InvalidRequestException("정렬을 지원하지 않는 속성: " + property);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import study.querydsl.config.QueryGuardrails;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+//MemberSearchCondition 검색 쿼리를 JPQL 로 한 번만 만들어 두고 값만 바인딩해서 실행한다
+//조건 4개(username, teamName, ageGoe, ageLoe)의 유무로 쿼리 모양은 16가지뿐이므로
+//모양별로 Querydsl 식 생성 + JPQL 직렬화를 한 번만 하고, JPQL 문자열이 같으니 하이버네이트 쿼리 플랜 캐시도 재사용된다.
+//적중/미스는 member.search.plan.cache{result=hit|miss}, 만들어 둔 쿼리 수는 member.search.plan.compiled 로 본다.
+@Component
+public class MemberSearchPlanCache {
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+
+    private static final Param<String> usernameParam = new Param<>(String.class, "username");
+    private static final Param<String> teamNameParam = new Param<>(String.class, "teamName");
+    private static final Param<Integer> ageGoeParam = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> ageLoeParam = new Param<>(Integer.class, "ageLoe");
+
+    private static final QMemberTeamDto projection = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName"));
+
+    private final EntityManager em;
+    private final QueryGuardrails guardrails;
+    private final AtomicReferenceArray<CompiledQuery> plans = new AtomicReferenceArray<>(16);
+    //페이지 조회용, 모양 + 정렬별
+    private final Map<String, CompiledQuery> orderedPlans = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MemberSearchPlanCache(EntityManager em, QueryGuardrails guardrails, MeterRegistry registry) {
+        this.em = em;
+        this.guardrails = guardrails;
+        FunctionCounter.builder("member.search.plan.cache", hits, LongAdder::sum)
+                .description("컴파일해 둔 검색 쿼리를 재사용한 횟수")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("member.search.plan.cache", misses, LongAdder::sum)
+                .description("검색 쿼리를 새로 컴파일한 횟수")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("member.search.plan.compiled", this, MemberSearchPlanCache::compiledCount)
+                .description("컴파일해 둔 검색 쿼리 수 (조건 모양, 모양 + 정렬)")
+                .register(registry);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return execute(condition, null, null, new OrderSpecifier[0]);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition, long offset, int limit) {
+        return search(condition, offset, limit, Sort.unsorted());
+    }
+
+    //sort 다음에 member.id 로 정렬한다 (MemberSearchOrder)
+    public List<MemberTeamDto> search(MemberSearchCondition condition, long offset, int limit, Sort sort) {
+        return execute(condition, offset, limit, MemberSearchOrder.of(sort));
+    }
+
+    //한 번에 fetchSize 만큼만 JDBC 에서 가져오는 stream, 트랜잭션 안에서 사용하고 닫아야 한다
+    //내보내기용이라 QueryGuardrails 를 걸지 않는다
+    public Stream<MemberTeamDto> stream(MemberSearchCondition condition, int fetchSize) {
+        return stream(em, condition, fetchSize);
+    }
+
+    //스프링 트랜잭션 밖에서 직접 만든 EntityManager 로 실행할 때 (ReactiveMemberSearch)
+    Stream<MemberTeamDto> stream(EntityManager em, MemberSearchCondition condition, int fetchSize) {
+        Query query = plan(shapeOf(condition)).bind(em, condition)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize);
+
+        @SuppressWarnings("unchecked")
+        Stream<Object[]> rows = query.getResultStream();
+        return rows.map(projection::newInstance);
+    }
+
+    private int compiledCount() {
+        int count = orderedPlans.size();
+        for (int i = 0; i < plans.length(); i++) {
+            if (plans.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<MemberTeamDto> execute(MemberSearchCondition condition, Long offset, Integer limit, OrderSpecifier<?>[] orderBy) {
+        Query query = (orderBy.length == 0 ? plan(shapeOf(condition)) : plan(shapeOf(condition), orderBy)).bind(em, condition);
+        if (offset != null) {
+            query.setFirstResult(Math.toIntExact(offset));
+            query.setMaxResults(limit);
+        }
+        guardrails.apply(query, offset == null);
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        List<MemberTeamDto> content = rows.stream()
+                .map(projection::newInstance)
+                .collect(Collectors.toList());
+        return offset == null ? guardrails.truncate(content) : content;
+    }
+
+    private CompiledQuery plan(int shape) {
+        CompiledQuery plan = plans.get(shape);
+        if (plan != null) {
+            hits.increment();
+            return plan;
+        }
+        misses.increment();
+        //동시에 처음 들어와도 같은 결과라 먼저 넣은 쪽을 쓰면 된다
+        plans.compareAndSet(shape, null, compile(shape));
+        return plans.get(shape);
+    }
+
+    //정렬은 MemberSearchOrder 가 허용하는 속성 조합뿐이라 모양 x 정렬 개수도 많지 않다
+    private CompiledQuery plan(int shape, OrderSpecifier<?>[] orderBy) {
+        String key = shape + " " + Arrays.toString(orderBy);
+        CompiledQuery plan = orderedPlans.get(key);
+        if (plan != null) {
+            hits.increment();
+            return plan;
+        }
+        misses.increment();
+        return orderedPlans.computeIfAbsent(key, k -> compile(shape, orderBy));
+    }
+
+    private CompiledQuery compile(int shape, OrderSpecifier<?>... orderBy) {
+        Predicate[] where = {
+                (shape & USERNAME) != 0 ? member.username.eq(usernameParam) : null,
+                (shape & TEAM_NAME) != 0 ? team.name.eq(teamNameParam) : null,
+                (shape & AGE_GOE) != 0 ? member.age.goe(ageGoeParam) : null,
+                (shape & AGE_LOE) != 0 ? member.age.loe(ageLoeParam) : null
+        };
+        JPQLTemplates templates = JPAProvider.getTemplates(em);
+        JPAQuery<MemberTeamDto> query = MemberTeamJoinPlanner.plan(projection, where)
+                .applyTo(new JPAQuery<Void>(em, templates).select(projection).from(member))
+                .where(where)
+                .orderBy(orderBy);
+
+        JPQLSerializer serializer = new JPQLSerializer(templates, em);
+        serializer.serialize(query.getMetadata(), false, null);
+        return new CompiledQuery(serializer.toString(), serializer.getConstants());
+    }
+
+    //hasText, null 체크는 MemberSearchPredicates 와 같은 기준
+    static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    private static class CompiledQuery {
+
+        private final String jpql;
+        private final List<Object> constants;
+
+        CompiledQuery(String jpql, List<Object> constants) {
+            this.jpql = jpql;
+            this.constants = constants;
+        }
+
+        Query bind(EntityManager em, MemberSearchCondition condition) {
+            Map<ParamExpression<?>, Object> params = new HashMap<>();
+            params.put(usernameParam, condition.getUsername());
+            params.put(teamNameParam, condition.getTeamName());
+            params.put(ageGoeParam, condition.getAgeGoe());
+            params.put(ageLoeParam, condition.getAgeLoe());
+
+            Query query = em.createQuery(jpql);
+            JPAUtil.setConstants(query, constants, params);
+            return query;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+//select, where 절에서 team 경로를 쓰는지 보고 member.team 조인을 딱 한 번만 건다
+//조인 없이 team.name 같은 경로를 쓰면 하이버네이트가 member, team 을 cross join(카테시안 곱) 한다.
+enum MemberTeamJoinPlanner {
+
+    //team 을 안 쓰면 조인하지 않는다
+    NONE,
+    //select 에서만 team 을 쓰면 팀이 없는 회원도 나오도록 left join
+    LEFT,
+    //where 의 최상위 and 조건 중 하나가 team 경로를 직접 비교(eq, in, 범위, like 등)하면
+    //team 이 null 인 행은 그 조건이 null 이 되어 어차피 걸러지므로 inner join
+    //isNull, or, not 안에서만 team 을 쓰면 팀이 없는 회원이 결과에 남을 수 있으므로 left join
+    INNER;
+
+    //team 경로 쪽이 null 이면 결과도 null(거짓)이 되는 비교
+    private static final Set<Operator> NULL_REJECTING = Set.of(
+            Ops.EQ, Ops.NE, Ops.IN, Ops.NOT_IN, Ops.LT, Ops.GT, Ops.LOE, Ops.GOE, Ops.BETWEEN,
+            Ops.LIKE, Ops.LIKE_IC, Ops.LIKE_ESCAPE, Ops.LIKE_ESCAPE_IC, Ops.EQ_IGNORE_CASE,
+            Ops.STARTS_WITH, Ops.STARTS_WITH_IC, Ops.ENDS_WITH, Ops.ENDS_WITH_IC,
+            Ops.STRING_CONTAINS, Ops.STRING_CONTAINS_IC);
+
+    static MemberTeamJoinPlanner plan(Expression<?> projection, Predicate... where) {
+        boolean teamInWhere = false;
+        for (Predicate predicate : where) {
+            for (Expression<?> conjunct : conjuncts(predicate)) {
+                if (rejectsNullTeam(conjunct)) {
+                    return INNER;
+                }
+                teamInWhere |= usesTeam(conjunct);
+            }
+        }
+        return teamInWhere || usesTeam(projection) ? LEFT : NONE;
+    }
+
+    //최상위 and 를 풀어서 각 조건으로 (BooleanBuilder 포함)
+    private static List<Expression<?>> conjuncts(Expression<?> predicate) {
+        List<Expression<?>> conjuncts = new ArrayList<>();
+        if (predicate instanceof BooleanBuilder) {
+            predicate = ((BooleanBuilder) predicate).getValue();
+        }
+        if (predicate == null) {
+            return conjuncts;
+        }
+        if (predicate instanceof Operation && ((Operation<?>) predicate).getOperator() == Ops.AND) {
+            for (Expression<?> arg : ((Operation<?>) predicate).getArgs()) {
+                conjuncts.addAll(conjuncts(arg));
+            }
+        } else {
+            conjuncts.add(predicate);
+        }
+        return conjuncts;
+    }
+
+    private static boolean rejectsNullTeam(Expression<?> conjunct) {
+        if (!(conjunct instanceof Operation)) {
+            return false;
+        }
+        Operation<?> operation = (Operation<?>) conjunct;
+        return NULL_REJECTING.contains(operation.getOperator())
+                && operation.getArgs().stream().anyMatch(arg -> arg instanceof Path && team.equals(((Path<?>) arg).getRoot()));
+    }
+
+    <T> JPAQuery<T> applyTo(JPAQuery<T> query) {
+        switch (this) {
+            case LEFT:
+                return query.leftJoin(member.team, team);
+            case INNER:
+                return query.join(member.team, team);
+            default:
+                return query;
+        }
+    }
+
+    private static boolean usesTeam(Expression<?> expression) {
+        if (expression == null) {
+            return false;
+        }
+        if (expression instanceof BooleanBuilder) {
+            return usesTeam(((BooleanBuilder) expression).getValue());
+        }
+        if (expression instanceof Path) {
+            return team.equals(((Path<?>) expression).getRoot());
+        }
+        if (expression instanceof Operation) {
+            return ((Operation<?>) expression).getArgs().stream().anyMatch(MemberTeamJoinPlanner::usesTeam);
+        }
+        if (expression instanceof FactoryExpression) {
+            return ((FactoryExpression<?>) expression).getArgs().stream().anyMatch(MemberTeamJoinPlanner::usesTeam);
+        }
+        if (expression instanceof TemplateExpression) {
+            return ((TemplateExpression<?>) expression).getArgs().stream()
+                    .anyMatch(arg -> arg instanceof Expression && usesTeam((Expression<?>) arg));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+package study.querydsl.repository;
+
+//offset 페이징에서 내용(content)을 가져오는 방법, 둘 다 Pageable 정렬 + member.id 순서 (MemberSearchOrder)
+public enum PagingStrategy {
+
+    //검색 쿼리 하나에 offset/limit (앞 페이지 행도 team 과 조인한 뒤 버린다)
+    OFFSET,
+
+    //1단계: 조건에 맞는 member.id 만 offset/limit 으로 (인덱스만 읽고 끝날 수 있다)
+    //2단계: 그 id 들만 team 과 조인해서 dto 로 조회, 순서는 1단계 순
+    ID_FIRST
+}
@@ -0,0 +1,374 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.ConstantImpl;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import org.springframework.util.ReflectionUtils;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import java.lang.reflect.Field;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+//QuerydslPredicateExecutor 로 들어오는 임의의 Predicate 를 정리한다
+//- 중첩된 and/or 를 펼치고 같은 조건은 하나만 남긴다
+//- and 로 묶인 같은 경로의 범위(goe, lt, between ..)와 eq/in 은 하나로 합친다 ex) age between 10 and 40 and age >= 20 -> age between 20 and 40
+//  숫자와 날짜/시간만 합친다, 문자열은 DB collation 에 따라 비교 결과가 자바와 다를 수 있다
+//- or 로 묶인 같은 경로의 eq/in 은 in 하나로 합친다
+//- 만족할 수 없는 조건이면 UNSATISFIABLE 을 돌려준다 (쿼리를 보내지 않고 빈 결과)
+//- not 은 안쪽에 null 이 될 수 있는 경로가 있으면 그대로 둔다
+//  SQL 에서 null 과 비교한 결과는 false 가 아니라 unknown 이고 not unknown 도 unknown 이므로, not(만족할 수 없는 조건)이 조건 없음이 되지 않는다
+//조건 순서를 문자열 순으로 맞추므로 순서만 다른 조건은 같은 JPQL 이 되어 하이버네이트 쿼리 플랜 캐시를 같이 쓴다.
+final class PredicateOptimizer {
+
+    //쿼리로 보내지 않는다, 호출하는 쪽에서 == 로 비교
+    static final Predicate UNSATISFIABLE = Expressions.FALSE.isTrue();
+
+    private PredicateOptimizer() {
+    }
+
+    //조건이 없으면 null
+    static Predicate optimize(Predicate predicate) {
+        if (predicate instanceof BooleanBuilder) {
+            return optimize(((BooleanBuilder) predicate).getValue());
+        }
+        if (!(predicate instanceof Operation)) {
+            return predicate;
+        }
+        Operator operator = ((Operation<?>) predicate).getOperator();
+        if (operator == Ops.AND) {
+            return and(flatten(Ops.AND, predicate, new ArrayList<>()));
+        }
+        if (operator == Ops.OR) {
+            return or(flatten(Ops.OR, predicate, new ArrayList<>()));
+        }
+        if (operator == Ops.NOT) {
+            if (!nonNullPaths(((Operation<?>) predicate).getArg(0))) {
+                return predicate;
+            }
+            Predicate negated = optimize((Predicate) ((Operation<?>) predicate).getArg(0));
+            if (negated == UNSATISFIABLE) {
+                return null;
+            }
+            return negated == null ? UNSATISFIABLE : ExpressionUtils.predicate(Ops.NOT, negated);
+        }
+        return predicate;
+    }
+
+    //자식은 먼저 정리하고, 정리한 결과가 같은 연산자면 한 단계로 펼친다
+    private static List<Predicate> flatten(Operator operator, Expression<?> expression, List<Predicate> children) {
+        if (expression instanceof BooleanBuilder) {
+            return flatten(operator, ((BooleanBuilder) expression).getValue(), children);
+        }
+        if (expression instanceof Operation && ((Operation<?>) expression).getOperator() == operator) {
+            for (Expression<?> arg : ((Operation<?>) expression).getArgs()) {
+                flatten(operator, arg, children);
+            }
+            return children;
+        }
+        Predicate child = optimize((Predicate) expression);
+        if (child instanceof Operation && ((Operation<?>) child).getOperator() == operator) {
+            for (Expression<?> arg : ((Operation<?>) child).getArgs()) {
+                children.add((Predicate) arg);
+            }
+        } else {
+            children.add(child);
+        }
+        return children;
+    }
+
+    private static Predicate and(List<Predicate> children) {
+        Map<Path<?>, Range> ranges = new LinkedHashMap<>();
+        List<Predicate> rest = new ArrayList<>();
+        for (Predicate child : children) {
+            if (child == UNSATISFIABLE) {
+                return UNSATISFIABLE;
+            }
+            if (child == null) {
+                continue;
+            }
+            Path<?> path = rangePath(child);
+            if (path == null || !ordered(child)) {
+                rest.add(child);
+            } else {
+                ranges.computeIfAbsent(path, Range::new).add((Operation<?>) child);
+            }
+        }
+        for (Range range : ranges.values()) {
+            List<Predicate> merged = range.toPredicates();
+            if (merged == null) {
+                return UNSATISFIABLE;
+            }
+            rest.addAll(merged);
+        }
+        return ExpressionUtils.allOf(canonical(rest));
+    }
+
+    private static Predicate or(List<Predicate> children) {
+        Map<Path<?>, Set<Object>> values = new LinkedHashMap<>();
+        List<Predicate> rest = new ArrayList<>();
+        for (Predicate child : children) {
+            if (child == null) {
+                return null;
+            }
+            if (child == UNSATISFIABLE) {
+                continue;
+            }
+            Path<?> path = rangePath(child);
+            Operator operator = path == null ? null : ((Operation<?>) child).getOperator();
+            if (operator == Ops.EQ || operator == Ops.IN) {
+                values.computeIfAbsent(path, p -> new LinkedHashSet<>()).addAll(constants((Operation<?>) child));
+            } else {
+                rest.add(child);
+            }
+        }
+        //빈 in 은 거짓이므로 버린다
+        values.forEach((path, union) -> {
+            if (!union.isEmpty()) {
+                rest.add(in(path, union));
+            }
+        });
+        if (rest.isEmpty()) {
+            return UNSATISFIABLE;
+        }
+        return ExpressionUtils.anyOf(canonical(rest));
+    }
+
+    //중복 제거 + 순서 고정
+    private static List<Predicate> canonical(List<Predicate> predicates) {
+        Map<String, Predicate> byText = new TreeMap<>();
+        for (Predicate predicate : predicates) {
+            byText.putIfAbsent(predicate.toString(), predicate);
+        }
+        return new ArrayList<>(byText.values());
+    }
+
+    //"경로 연산자 상수" 형태의 비교 조건이면 그 경로
+    private static Path<?> rangePath(Predicate predicate) {
+        if (!(predicate instanceof Operation)) {
+            return null;
+        }
+        Operation<?> operation = (Operation<?>) predicate;
+        Operator operator = operation.getOperator();
+        if (operator != Ops.EQ && operator != Ops.NE && operator != Ops.IN && operator != Ops.BETWEEN
+                && operator != Ops.GT && operator != Ops.GOE && operator != Ops.LT && operator != Ops.LOE) {
+            return null;
+        }
+        if (!(operation.getArg(0) instanceof Path)) {
+            return null;
+        }
+        for (int i = 1; i < operation.getArgs().size(); i++) {
+            Expression<?> arg = operation.getArg(i);
+            if (!(arg instanceof Constant) || ((Constant<?>) arg).getConstant() == null) {
+                return null;
+            }
+            Object value = ((Constant<?>) arg).getConstant();
+            boolean comparable = operator == Ops.IN
+                    ? value instanceof Collection && ((Collection<?>) value).stream().allMatch(Comparable.class::isInstance)
+                    : value instanceof Comparable;
+            if (!comparable) {
+                return null;
+            }
+        }
+        return (Path<?>) operation.getArg(0);
+    }
+
+    //자바 비교와 DB 비교 결과가 같은 값인지
+    private static boolean ordered(Predicate predicate) {
+        return constants((Operation<?>) predicate).stream()
+                .allMatch(value -> value instanceof Number || value instanceof Temporal || value instanceof Date);
+    }
+
+    //식 안의 모든 경로가 null 이 될 수 없으면 true (루트 엔티티의 id, 기본 타입, nullable = false 컬럼)
+    //연관관계를 거친 경로는 outer join 이면 null 이 될 수 있으므로 false
+    private static boolean nonNullPaths(Expression<?> expression) {
+        if (expression instanceof BooleanBuilder) {
+            Predicate value = ((BooleanBuilder) expression).getValue();
+            return value == null || nonNullPaths(value);
+        }
+        if (expression instanceof Constant) {
+            return true;
+        }
+        if (expression instanceof Path) {
+            return nonNull((Path<?>) expression);
+        }
+        if (expression instanceof Operation) {
+            return ((Operation<?>) expression).getArgs().stream().allMatch(PredicateOptimizer::nonNullPaths);
+        }
+        return false;
+    }
+
+    private static boolean nonNull(Path<?> path) {
+        PathMetadata metadata = path.getMetadata();
+        if (metadata.isRoot()) {
+            return true;
+        }
+        Path<?> parent = metadata.getParent();
+        if (!parent.getMetadata().isRoot()) {
+            return false;
+        }
+        Field field = ReflectionUtils.findField(parent.getType(), metadata.getName());
+        if (field == null) {
+            return false;
+        }
+        if (field.getType().isPrimitive() || field.isAnnotationPresent(Id.class)) {
+            return true;
+        }
+        Column column = field.getAnnotation(Column.class);
+        return column != null && !column.nullable();
+    }
+
+    private static List<Object> constants(Operation<?> operation) {
+        List<Object> constants = new ArrayList<>();
+        for (int i = 1; i < operation.getArgs().size(); i++) {
+            Object value = ((Constant<?>) operation.getArg(i)).getConstant();
+            if (value instanceof Collection) {
+                constants.addAll((Collection<?>) value);
+            } else {
+                constants.add(value);
+            }
+        }
+        return constants;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate in(Path<?> path, Set<Object> values) {
+        if (values.size() == 1) {
+            return ExpressionUtils.predicate(Ops.EQ, path, ConstantImpl.create(values.iterator().next()));
+        }
+        return ExpressionUtils.predicate(Ops.IN, path, ConstantImpl.create(new ArrayList<>(new TreeSet(values))));
+    }
+
+    //and 로 묶인 한 경로의 조건들: 하한, 상한, 허용 값(eq/in), 제외 값(ne)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static class Range {
+
+        private final Path<?> path;
+        private Comparable lower;
+        private boolean lowerInclusive;
+        private Comparable upper;
+        private boolean upperInclusive;
+        //eq/in 이 없으면 null
+        private Set<Object> values;
+        private final Set<Object> excluded = new TreeSet<>();
+
+        Range(Path<?> path) {
+            this.path = path;
+        }
+
+        void add(Operation<?> operation) {
+            List<Object> constants = constants(operation);
+            Operator operator = operation.getOperator();
+            if (operator == Ops.EQ || operator == Ops.IN) {
+                Set<Object> allowed = new TreeSet<>(constants);
+                if (values != null) {
+                    allowed.retainAll(values);
+                }
+                values = allowed;
+            } else if (operator == Ops.NE) {
+                excluded.add(constants.get(0));
+            } else if (operator == Ops.BETWEEN) {
+                lower((Comparable) constants.get(0), true);
+                upper((Comparable) constants.get(1), true);
+            } else if (operator == Ops.GT || operator == Ops.GOE) {
+                lower((Comparable) constants.get(0), operator == Ops.GOE);
+            } else {
+                upper((Comparable) constants.get(0), operator == Ops.LOE);
+            }
+        }
+
+        private void lower(Comparable value, boolean inclusive) {
+            int compared = lower == null ? 1 : value.compareTo(lower);
+            if (compared > 0 || (compared == 0 && !inclusive)) {
+                lower = value;
+                lowerInclusive = inclusive;
+            }
+        }
+
+        private void upper(Comparable value, boolean inclusive) {
+            int compared = upper == null ? -1 : value.compareTo(upper);
+            if (compared < 0 || (compared == 0 && !inclusive)) {
+                upper = value;
+                upperInclusive = inclusive;
+            }
+        }
+
+        private boolean contains(Object value) {
+            return withinBounds(value) && !excluded.contains(value);
+        }
+
+        private boolean withinBounds(Object value) {
+            Comparable comparable = (Comparable) value;
+            if (lower != null) {
+                int compared = comparable.compareTo(lower);
+                if (compared < 0 || (compared == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int compared = comparable.compareTo(upper);
+                return compared < 0 || (compared == 0 && upperInclusive);
+            }
+            return true;
+        }
+
+        //만족할 수 없으면 null
+        List<Predicate> toPredicates() {
+            List<Predicate> predicates = new ArrayList<>();
+            if (values != null) {
+                values.removeIf(value -> !contains(value));
+                if (values.isEmpty()) {
+                    return null;
+                }
+                predicates.add(in(path, values));
+                return predicates;
+            }
+
+            if (lower != null && upper != null) {
+                int compared = lower.compareTo(upper);
+                if (compared > 0 || (compared == 0 && !(lowerInclusive && upperInclusive))) {
+                    return null;
+                }
+                if (compared == 0) {
+                    return excluded.contains(lower) ? null : List.of(in(path, Set.<Object>of(lower)));
+                }
+            }
+            if (lower != null && upper != null && lowerInclusive && upperInclusive) {
+                predicates.add(ExpressionUtils.predicate(Ops.BETWEEN, path, ConstantImpl.create(lower), ConstantImpl.create(upper)));
+            } else {
+                if (lower != null) {
+                    predicates.add(ExpressionUtils.predicate(lowerInclusive ? Ops.GOE : Ops.GT, path, ConstantImpl.create(lower)));
+                }
+                if (upper != null) {
+                    predicates.add(ExpressionUtils.predicate(upperInclusive ? Ops.LOE : Ops.LT, path, ConstantImpl.create(upper)));
+                }
+            }
+            //범위 밖의 ne 는 의미가 없다
+            for (Object value : excluded) {
+                if (withinBounds(value)) {
+                    predicates.add(ExpressionUtils.predicate(Ops.NE, path, ConstantImpl.create(value)));
+                }
+            }
+            return predicates;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package study.querydsl.repository;
+
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.metrics.ConnectionLeakDetector;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.stream.Stream;
+
+//MemberSearchPlanCache 의 검색 쿼리를 Flux 로 흘려보낸다
+//JDBC 는 블로킹이므로 구독마다 전용 EntityManager(읽기 전용 트랜잭션)를 열고 bounded 스케줄러 스레드에서만 읽는다.
+//Flux.fromStream 은 요청(request(n))만큼만 ResultSet 을 읽으므로 느린 구독자가 있어도 결과를 메모리에 쌓지 않는다.
+//구독이 끝나거나 취소되면 stream, 트랜잭션, EntityManager 를 닫는다.
+//구독 내내 커넥션을 쥐고 있는 게 정상이므로 커넥션을 빌리는 구간은 누수 감지에서 뺀다 (ConnectionLeakDetector.longRunning).
+@Component
+class ReactiveMemberSearch {
+
+    private final EntityManagerFactory emf;
+    private final MemberSearchPlanCache planCache;
+    private final Scheduler scheduler;
+
+    ReactiveMemberSearch(EntityManagerFactory emf, MemberSearchPlanCache planCache,
+                         @Value("${member.reactive.threads:8}") int threads,
+                         @Value("${member.reactive.queue-capacity:100}") int queueCapacity) {
+        this.emf = emf;
+        this.planCache = planCache;
+        this.scheduler = Schedulers.newBoundedElastic(threads, queueCapacity, "member-reactive");
+    }
+
+    Flux<MemberTeamDto> search(MemberSearchCondition condition, int fetchSize) {
+        return Flux.using(() -> ConnectionLeakDetector.longRunning(this::open), em -> rows(em, condition, fetchSize), this::close)
+                .subscribeOn(scheduler);
+    }
+
+    private EntityManager open() {
+        EntityManager em = emf.createEntityManager();
+        em.unwrap(Session.class).setDefaultReadOnly(true);
+        em.getTransaction().begin();
+        return em;
+    }
+
+    private Flux<MemberTeamDto> rows(EntityManager em, MemberSearchCondition condition, int fetchSize) {
+        return Flux.using(() -> ConnectionLeakDetector.longRunning(() -> planCache.stream(em, condition, fetchSize)), Flux::fromStream, Stream::close);
+    }
+
+    private void close(EntityManager em) {
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import study.querydsl.dto.SearchIndex;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+//검색 조건 클래스의 @SearchIndex 를 모아 만드는 인덱스 계획
+//여러 필드가 같은 인덱스를 쓰면(ex. ageGoe, ageLoe) 하나로 합치고, 이름이 같은데 정의가 다르면 실패한다
+public class SearchIndexPlan {
+
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+
+    private SearchIndexPlan() {
+    }
+
+    public static SearchIndexPlan of(Class<?> conditionType) {
+        SearchIndexPlan plan = new SearchIndexPlan();
+        for (Field field : conditionType.getDeclaredFields()) {
+            for (SearchIndex searchIndex : field.getAnnotationsByType(SearchIndex.class)) {
+                plan.add(new Index(searchIndex.name(), searchIndex.table(), Arrays.asList(searchIndex.columns())));
+            }
+        }
+        return plan;
+    }
+
+    private void add(Index index) {
+        Index existing = indexes.putIfAbsent(index.getName(), index);
+        if (existing != null && !existing.equals(index)) {
+            throw new IllegalStateException("같은 이름의 인덱스 정의가 다릅니다: " + existing + ", " + index);
+        }
+    }
+
+    public List<Index> getIndexes() {
+        return new ArrayList<>(indexes.values());
+    }
+
+    public List<String> ddl() {
+        return indexes.values().stream()
+                .map(Index::ddl)
+                .collect(Collectors.toList());
+    }
+
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    public static class Index {
+
+        private final String name;
+        private final String table;
+        private final List<String> columns;
+
+        Index(String name, String table, List<String> columns) {
+            this.name = name;
+            this.table = table;
+            this.columns = columns;
+        }
+
+        public String ddl() {
+            return "create index " + name + " on " + table + " (" + String.join(", ", columns) + ")";
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.config.QueryGuardrails;
+import study.querydsl.dto.ChangeFeed;
+import study.querydsl.dto.QTeamChangeDto;
+import study.querydsl.dto.TeamChangeDto;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QChangeTombstone.changeTombstone;
+import static study.querydsl.entity.QTeam.team;
+
+//Team 은 2차 캐시 대상이라 id 조회는 캐시에서, 이름 조회는 쿼리 캐시에서 먼저 찾는다
+@Repository
+public class TeamJpaRepository {
+
+    private final EntityManager em;
+    private final GuardedQueryFactory queryFactory;
+    private final QueryGuardrails guardrails;
+    private final Duration changeFeedSettleTime;
+
+    public TeamJpaRepository(EntityManager em, @Value("${change-feed.settle-time:1s}") Duration changeFeedSettleTime,
+                             QueryGuardrails guardrails) {
+        this.em = em;
+        this.queryFactory = new GuardedQueryFactory(em, guardrails);
+        this.guardrails = guardrails;
+        this.changeFeedSettleTime = changeFeedSettleTime;
+    }
+
+    public void save(Team team) {
+        em.persist(team);
+    }
+
+    public Optional<Team> findById(Long id) {
+        return Optional.ofNullable(em.find(Team.class, id));
+    }
+
+    public Optional<Team> findByName(String name) {
+        Team findTeam = queryFactory
+                .selectFrom(team)
+                .where(team.name.eq(name))
+                .fetchFirst();
+        return Optional.ofNullable(findTeam);
+    }
+
+    //MemberRepositoryImpl.findChangedSince 와 같은 방식 (idx_team_last_modified), 같은 이유로 primary 에서 읽는다
+    @Transactional
+    public ChangeFeed<TeamChangeDto> findChangedSince(String watermark, int requestedLimit) {
+        int limit = guardrails.clampPageSize(ChangeWatermark.checkLimit(requestedLimit));
+        ChangeWatermark position = ChangeWatermark.of(watermark);
+
+        List<TeamChangeDto> rows = queryFactory
+                .select(new QTeamChangeDto(team.id, team.name, team.version, team.lastModified))
+                .from(team)
+                .where(position.after(team.lastModified, team.id),
+                        ChangeWatermark.settled(team.lastModified, changeFeedSettleTime))
+                .orderBy(team.lastModified.asc(), team.id.asc())
+                .limit(limit + 1)
+                .fetch();
+
+        List<TeamChangeDto> deleted = queryFactory
+                .select(new QTeamChangeDto(changeTombstone.entityId, changeTombstone.deletedAt))
+                .from(changeTombstone)
+                .where(changeTombstone.entityType.eq(Team.class.getSimpleName()),
+                        position.after(changeTombstone.deletedAt, changeTombstone.entityId),
+                        ChangeWatermark.settled(changeTombstone.deletedAt, changeFeedSettleTime))
+                .orderBy(changeTombstone.deletedAt.asc(), changeTombstone.entityId.asc())
+                .limit(limit + 1)
+                .fetch();
+
+        return position.feed(rows, deleted, limit, TeamChangeDto::getLastModified, TeamChangeDto::getTeamId);
+    }
+}
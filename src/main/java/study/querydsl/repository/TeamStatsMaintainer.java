@@ -0,0 +1,330 @@
+package study.querydsl.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkWriteEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//회원이 추가/수정/삭제될 때 team_stats 를 같은 트랜잭션 안에서 고친다
+//flush 중에는 팀별 변화량(회원 수, 나이 합)만 모으고, 커밋 직전(하이버네이트가 마지막 flush 를 끝낸 뒤) 팀마다 한 번씩 반영한다.
+//최소/최대 나이는 빼서 구할 수 없으므로 회원이 빠진 팀만 idx_member_team_age(team_id, age) 인덱스로 다시 구한다.
+//롤백되면 모은 변화량도 버린다. JPQL/JDBC 로 직접 바꾼 회원은 TeamStatsRepository.rebuild() 로 맞춘다.
+//변경 전 상태를 모르는 벌크 이벤트는 팀을 특정할 수 없으므로 커밋 뒤 백그라운드에서 전체를 다시 만든다 (쓰는 트랜잭션이 team_stats 전체를 잠그지 않도록).
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class TeamStatsMaintainer implements PreUpdateEventListener, PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    static final String DELETE_ALL = "delete from team_stats";
+    static final String INSERT_ALL = "insert into team_stats (team_id, member_count, age_sum, age_min, age_max)"
+            + " select team_id, count(*), sum(age), min(age), max(age) from member where team_id is not null group by team_id";
+    //빈 요약 행, 다른 트랜잭션이 먼저 넣었으면 넣지 않는다
+    private static final String INSERT_EMPTY = "insert into team_stats (team_id, member_count, age_sum, age_min, age_max)"
+            + " select ?, 0, 0, null, null where not exists (select 1 from team_stats where team_id = ?)";
+    private static final String ADD = "update team_stats set member_count = member_count + ?, age_sum = age_sum + ?,"
+            + " age_min = least(coalesce(age_min, ?), ?), age_max = greatest(coalesce(age_max, ?), ?) where team_id = ?";
+    private static final String DUPLICATE_KEY = "23505";
+    private static final String ADD_AND_REMOVE = "update team_stats set member_count = member_count + ?, age_sum = age_sum + ?,"
+            + " age_min = (select min(m.age) from member m where m.team_id = ?),"
+            + " age_max = (select max(m.age) from member m where m.team_id = ?) where team_id = ?";
+    private static final String DELETE_EMPTY = "delete from team_stats where team_id = ? and member_count = 0";
+    private static final String SELECT_TEAM_AND_AGE = "select team_id, age from member where member_id = ?";
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final TeamStatsRepository teamStatsRepository;
+    //세션(트랜잭션)마다 모으는 중인 변화량
+    private final Map<SessionImplementor, Changes> pending = new ConcurrentHashMap<>();
+    //전체 재구성은 한 번에 하나만, 이미 예약되어 있으면 그걸로 충분하다
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "team-stats-rebuilder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PRE_UPDATE, this);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            changes(event.getSession()).add(teamId(event.getPersister(), event.getState()), age(event.getPersister(), event.getState()));
+        }
+    }
+
+    //select-before-update 없이 준영속 엔티티를 update 하면 변경 전 상태(oldState)를 모른다
+    //update 가 실행되기 전에 그 회원의 변경 전 team_id, age 만 id 로 읽어서 두 팀의 변화량으로 모은다
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member) || event.getOldState() != null) {
+            return false;
+        }
+        EntityPersister persister = event.getPersister();
+        Changes changes = changes(event.getSession());
+        Object[] previous = event.getSession().doReturningWork(connection -> teamAndAge(connection, (Long) event.getId()));
+        if (previous != null) {
+            changes.remove((Long) previous[0], (Integer) previous[1]);
+        }
+        changes.add(teamId(persister, event.getState()), age(persister, event.getState()));
+        return false;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        //oldState 가 없으면 onPreUpdate 에서 모았다
+        if (!(event.getEntity() instanceof Member) || event.getOldState() == null) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Changes changes = changes(event.getSession());
+        Long oldTeamId = teamId(persister, event.getOldState());
+        Long newTeamId = teamId(persister, event.getState());
+        int oldAge = age(persister, event.getOldState());
+        int newAge = age(persister, event.getState());
+        if (oldAge != newAge || !Objects.equals(oldTeamId, newTeamId)) {
+            changes.remove(oldTeamId, oldAge);
+            changes.add(newTeamId, newAge);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            changes(event.getSession()).remove(teamId(event.getPersister(), event.getDeletedState()),
+                    age(event.getPersister(), event.getDeletedState()));
+        }
+    }
+
+    //MemberBulkRepository 는 같은 트랜잭션(세션) 안에서 이 이벤트를 발행한다
+    @EventListener
+    public void onBulkWrite(BulkWriteEvent event) {
+        if (event.getEntityType() != Member.class) {
+            return;
+        }
+        Changes changes = changes(em.unwrap(SessionImplementor.class));
+        if (event.getPreviousRows() == null || event.getCurrentRows() == null) {
+            changes.rebuildAfterCommit = true;
+            return;
+        }
+        for (MemberTeamDto row : event.getPreviousRows()) {
+            changes.remove(row.getTeamId(), row.getAge());
+        }
+        for (MemberTeamDto row : event.getCurrentRows()) {
+            changes.add(row.getTeamId(), row.getAge());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    //커밋된 회원으로 요약 테이블 전체를 다시 만든다 (별도 트랜잭션)
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        rebuilder.execute(() -> {
+            rebuildScheduled.set(false);
+            try {
+                teamStatsRepository.rebuild();
+            } catch (RuntimeException e) {
+                log.warn("team_stats 를 다시 만들지 못했습니다", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    //없는 회원이면 null
+    private static Object[] teamAndAge(Connection connection, long memberId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_TEAM_AND_AGE)) {
+            statement.setLong(1, memberId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new Object[]{rs.getObject(1, Long.class), rs.getInt(2)};
+            }
+        }
+    }
+
+    private Changes changes(SessionImplementor session) {
+        return pending.computeIfAbsent(session, key -> {
+            Changes changes = new Changes(key);
+            key.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) changes);
+            key.getActionQueue().registerProcess((AfterTransactionCompletionProcess) changes);
+            return changes;
+        });
+    }
+
+    private static Long teamId(EntityPersister persister, Object[] state) {
+        Object team = state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        if (team == null) {
+            return null;
+        }
+        //지연 로딩 프록시를 초기화하지 않고 id 만 꺼낸다
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Team) team).getId();
+    }
+
+    private static int age(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+
+    private class Changes implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+
+        private final SessionImplementor session;
+        //팀 id 순서로 갱신해서 동시에 커밋하는 트랜잭션끼리 데드락이 나지 않게 한다
+        private final Map<Long, Delta> teams = new TreeMap<>();
+        private boolean rebuildAfterCommit;
+
+        Changes(SessionImplementor session) {
+            this.session = session;
+        }
+
+        void add(Long teamId, int age) {
+            if (teamId != null) {
+                teams.computeIfAbsent(teamId, id -> new Delta()).add(age);
+            }
+        }
+
+        void remove(Long teamId, int age) {
+            if (teamId != null) {
+                teams.computeIfAbsent(teamId, id -> new Delta()).remove(age);
+            }
+        }
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            session.doWork(this::apply);
+        }
+
+        @Override
+        public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+            pending.remove(this.session);
+            if (success && rebuildAfterCommit) {
+                scheduleRebuild();
+            }
+        }
+
+        private void apply(Connection connection) throws SQLException {
+            for (Map.Entry<Long, Delta> entry : teams.entrySet()) {
+                long teamId = entry.getKey();
+                Delta delta = entry.getValue();
+                //요약 행이 아직 없는 팀 (첫 회원): 빈 행을 넣고 변화량을 더한다
+                //member 에서 다시 구하면 동시에 첫 회원을 넣는 트랜잭션끼리 서로의 회원을 보지 못해 한쪽이 빠진다
+                if (add(connection, teamId, delta) == 0) {
+                    insertEmpty(connection, teamId);
+                    add(connection, teamId, delta);
+                }
+                execute(connection, DELETE_EMPTY, teamId);
+            }
+        }
+
+        private int add(Connection connection, long teamId, Delta delta) throws SQLException {
+            return delta.removed
+                    ? execute(connection, ADD_AND_REMOVE, delta.count, delta.sum, teamId, teamId, teamId)
+                    : execute(connection, ADD, delta.count, delta.sum, delta.addedMin, delta.addedMin,
+                    delta.addedMax, delta.addedMax, teamId);
+        }
+
+        //not exists 를 함께 통과한 다른 트랜잭션이 먼저 넣었으면 키 중복으로 실패한다, 그 행에 더하면 된다
+        //실패한 insert 만 되돌리도록 savepoint 를 둔다 (트랜잭션 전체가 실패 상태가 되는 DB 가 있다)
+        private void insertEmpty(Connection connection, long teamId) throws SQLException {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                execute(connection, INSERT_EMPTY, teamId, teamId);
+            } catch (SQLException e) {
+                if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+            }
+        }
+
+        private int execute(Connection connection, String sql, Object... parameters) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                return statement.executeUpdate();
+            }
+        }
+    }
+
+    //한 팀의 변화량
+    private static class Delta {
+        private long count;
+        private long sum;
+        private Integer addedMin;
+        private Integer addedMax;
+        //빠진 회원이 있으면 최소/최대를 다시 구한다
+        private boolean removed;
+
+        void add(int age) {
+            count++;
+            sum += age;
+            addedMin = addedMin == null ? age : Math.min(addedMin, age);
+            addedMax = addedMax == null ? age : Math.max(addedMax, age);
+        }
+
+        void remove(int age) {
+            count--;
+            sum -= age;
+            removed = true;
+        }
+    }
+}
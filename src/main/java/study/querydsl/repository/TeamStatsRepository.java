@@ -0,0 +1,86 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+//팀 이름별 회원 수, 나이 합계/평균/최소/최대
+//findAll, findByTeamName 은 요약 테이블(team_stats)을 읽으므로 회원 수와 상관없이 팀 수만큼만 읽는다.
+//aggregate 는 member 를 직접 group by 한다 (요약 테이블 검증, 재구성 확인용).
+@Repository
+public class TeamStatsRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamStatsRepository(EntityManager em) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    //이름이 같은 팀은 aggregate 와 같이 하나로 합친다
+    @Transactional(readOnly = true)
+    public List<TeamStatsDto> findAll() {
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        team.name,
+                        teamStats.memberCount.sum(),
+                        teamStats.ageSum.sum(),
+                        teamStats.ageMin.min(),
+                        teamStats.ageMax.max()))
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<TeamStatsDto> findByTeamName(String teamName) {
+        return Optional.ofNullable(queryFactory
+                .select(new QTeamStatsDto(
+                        team.name,
+                        teamStats.memberCount.sum(),
+                        teamStats.ageSum.sum(),
+                        teamStats.ageMin.min(),
+                        teamStats.ageMax.max()))
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .where(team.name.eq(teamName))
+                .groupBy(team.name)
+                .fetchOne());
+    }
+
+    @Transactional(readOnly = true)
+    public List<TeamStatsDto> aggregate() {
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        team.name,
+                        member.count(),
+                        member.age.sum().longValue(),
+                        member.age.min(),
+                        member.age.max()))
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+
+    //JDBC 로 직접 넣은 회원(벌크 insert, 마이그레이션)처럼 이벤트 없이 바뀐 뒤에 요약 테이블을 처음부터 다시 만든다
+    @Transactional
+    public void rebuild() {
+        em.createNativeQuery(TeamStatsMaintainer.DELETE_ALL).executeUpdate();
+        em.createNativeQuery(TeamStatsMaintainer.INSERT_ALL).executeUpdate();
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+//대량 저장용 서비스
+//hibernate.jdbc.batch_size 만큼 persist 하면 flush 로 JDBC 배치를 보내고 clear 로 영속성 컨텍스트를 비운다.
+//clear 이후에는 저장한 엔티티가 준영속 상태가 되므로 저장 후 변경 감지를 기대하면 안 된다.
+@Service
+public class BatchInsertService {
+
+    private final EntityManager em;
+    private final int batchSize;
+
+    public BatchInsertService(EntityManager em,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.em = em;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public long persistAll(Iterable<?> entities) {
+        long count = 0;
+        for (Object entity : entities) {
+            em.persist(entity);
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return count;
+    }
+}
@@ -0,0 +1,42 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityWriteEvent;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MemberCountCacheTest {
+
+    MemberCountCache countCache = new MemberCountCache(Duration.ofMinutes(1), 100);
+
+    @Test
+    public void sameConditionHitsCache() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        //빈 문자열 username 은 검색 조건에서 무시되므로 같은 키
+        MemberSearchCondition sameCondition = new MemberSearchCondition();
+        sameCondition.setTeamName("teamA");
+        sameCondition.setUsername("");
+
+        assertThat(countCache.count(condition, () -> 10)).isEqualTo(10);
+        assertThat(countCache.count(sameCondition, () -> 20)).isEqualTo(10);
+        assertThat(countCache.count(condition, 5, () -> 6)).isEqualTo(6);
+    }
+
+    @Test
+    public void memberWriteInvalidates() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        assertThat(countCache.count(condition, () -> 10)).isEqualTo(10);
+
+        countCache.onWrite(new EntityWriteEvent("not an entity", EntityWriteEvent.Type.INSERT));
+        assertThat(countCache.count(condition, () -> 11)).isEqualTo(10);
+
+        countCache.onWrite(new EntityWriteEvent(new Member("member1"), EntityWriteEvent.Type.INSERT));
+        assertThat(countCache.count(condition, () -> 11)).isEqualTo(11);
+    }
+}
@@ -0,0 +1,206 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkWriteEvent;
+import study.querydsl.event.EntityWriteEvent;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MemberSearchResultCacheTest {
+
+    MemberSearchResultCache resultCache = new MemberSearchResultCache(Duration.ofMinutes(1), 1000, 10);
+    AtomicInteger loads = new AtomicInteger();
+
+    MemberSearchCondition teamACondition = new MemberSearchCondition();
+    MemberSearchCondition teamBCondition = new MemberSearchCondition();
+    MemberSearchCondition youngCondition = new MemberSearchCondition();
+
+    @BeforeEach
+    public void before() {
+        teamACondition.setTeamName("teamA");
+        teamBCondition.setTeamName("teamB");
+        youngCondition.setAgeLoe(20);
+
+        search(teamACondition);
+        search(teamBCondition);
+        search(youngCondition);
+        resultCache.page("complex", teamBCondition, PageRequest.of(1, 2),
+                () -> new PageImpl<>(List.of(new MemberTeamDto(3L, "member3", 30, 2L, "teamB"))));
+        loads.set(0);
+    }
+
+    @Test
+    public void sameConditionSkipsLoader() {
+        MemberSearchCondition sameCondition = new MemberSearchCondition();
+        sameCondition.setTeamName("teamA");
+        sameCondition.setUsername("");
+
+        search(sameCondition);
+        assertThat(loads).hasValue(0);
+        assertThat(resultCache.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void insertEvictsOnlyMatchingConditions() {
+        Member member = new Member("member5", 50, new Team("teamB"));
+
+        resultCache.onWrite(new EntityWriteEvent(member, EntityWriteEvent.Type.INSERT));
+
+        //teamB 조건은 페이지와 상관없이 모두 비우고 teamA, age <= 20 은 그대로
+        assertThat(resultCache.size()).isEqualTo(2);
+        search(teamACondition);
+        search(youngCondition);
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    public void updateEvictsByPreviousState() {
+        Team teamA = new Team("teamA");
+        Member member = new Member("member1", 30, teamA);
+
+        //나이가 10 -> 30 으로 바뀌면 age <= 20 결과에서 빠져야 한다
+        Map<String, Object> previousState = Map.of("username", "member1", "age", 10, "team", teamA);
+        resultCache.onWrite(new EntityWriteEvent(member, EntityWriteEvent.Type.UPDATE, previousState));
+
+        assertThat(resultCache.size()).isEqualTo(2);
+        search(teamBCondition);
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    public void bulkUpdateEvictsByRows() {
+        List<MemberTeamDto> previousRows = List.of(new MemberTeamDto(3L, "member3", 30, 2L, "teamB"));
+        List<MemberTeamDto> currentRows = List.of(new MemberTeamDto(3L, "member3", 15, 2L, "teamB"));
+
+        resultCache.onBulkWrite(new BulkWriteEvent(Member.class, EntityWriteEvent.Type.UPDATE,
+                List.of(3L), previousRows, currentRows));
+
+        assertThat(resultCache.size()).isEqualTo(1);
+        search(teamACondition);
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    public void unknownPreviousStateEvictsAll() {
+        Member member = new Member("member1", 10);
+
+        resultCache.onWrite(new EntityWriteEvent(member, EntityWriteEvent.Type.UPDATE));
+
+        assertThat(resultCache.size()).isZero();
+    }
+
+    @Test
+    public void largeResultIsNotCached() {
+        MemberSearchCondition all = new MemberSearchCondition();
+        List<MemberTeamDto> rows = LongStream.range(0, 11)
+                .mapToObj(id -> new MemberTeamDto(id, "member" + id, 10, 1L, "teamA"))
+                .collect(Collectors.toList());
+
+        resultCache.search(all, 0, () -> rows);
+
+        assertThat(resultCache.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void resultReachingMaxRowsIsNotCached() {
+        MemberSearchCondition all = new MemberSearchCondition();
+        List<MemberTeamDto> rows = LongStream.range(0, 3)
+                .mapToObj(id -> new MemberTeamDto(id, "member" + id, 10, 1L, "teamA"))
+                .collect(Collectors.toList());
+
+        //max-rows 3 으로 잘렸을 수 있는 결과
+        resultCache.search(all, 3, () -> rows);
+        assertThat(resultCache.size()).isEqualTo(4);
+
+        //제한이 다르면 다른 키
+        resultCache.search(all, 5, () -> rows);
+        assertThat(resultCache.search(all, 0, () -> Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void loadRacingEvictionIsNotStored() {
+        MemberSearchCondition teamC = new MemberSearchCondition();
+        teamC.setTeamName("teamC");
+
+        //조회하는 도중에 teamC 회원이 바뀌어 비우기가 일어난 경우
+        resultCache.search(teamC, 0, () -> {
+            resultCache.onWrite(new EntityWriteEvent(new Member("member9", 9, new Team("teamC")), EntityWriteEvent.Type.INSERT));
+            return Collections.emptyList();
+        });
+
+        search(teamC);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void readWriteTransactionBypassesCache() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            search(teamACondition);
+            assertThat(loads).hasValue(1);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    public void concurrentAsyncPagesShareOneLoad() throws Exception {
+        CompletableFuture<Page<MemberTeamDto>> loading = new CompletableFuture<>();
+        Supplier<CompletableFuture<Page<MemberTeamDto>>> loader = () -> {
+            loads.incrementAndGet();
+            return loading;
+        };
+
+        //첫 조회가 끝나기 전에 들어온 같은 요청은 그 조회를 기다린다
+        CompletableFuture<Page<MemberTeamDto>> first = resultCache.pageAsync("complex", teamACondition, PageRequest.of(0, 2), loader);
+        CompletableFuture<Page<MemberTeamDto>> second = resultCache.pageAsync("complex", teamACondition, PageRequest.of(0, 2), loader);
+        assertThat(loads).hasValue(1);
+
+        Page<MemberTeamDto> page = new PageImpl<>(List.of(new MemberTeamDto(1L, "member1", 10, 1L, "teamA")));
+        loading.complete(page);
+        assertThat(first.get()).isSameAs(page);
+        assertThat(second.get()).isSameAs(page);
+
+        //끝난 뒤에는 캐시에서
+        assertThat(resultCache.pageAsync("complex", teamACondition, PageRequest.of(0, 2), loader).get()).isSameAs(page);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void failedAsyncPageIsLoadedAgain() {
+        Supplier<CompletableFuture<Page<MemberTeamDto>>> failing = () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("timeout"));
+        };
+
+        assertThat(resultCache.pageAsync("complex", teamACondition, PageRequest.of(0, 2), failing)).isCompletedExceptionally();
+        assertThat(resultCache.pageAsync("complex", teamACondition, PageRequest.of(0, 2), failing)).isCompletedExceptionally();
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return resultCache.search(condition, 0, () -> {
+            loads.incrementAndGet();
+            return Collections.emptyList();
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "datasource.pool.adaptive.enabled=true",
+        "datasource.pool.adaptive.min-size=4",
+        "datasource.pool.adaptive.max-size=12",
+        "datasource.pool.adaptive.step=2",
+        "datasource.pool.adaptive.quiet-periods=2",
+        "datasource.pool.adaptive.interval=1h"}) //테스트에서 직접 resizeAll() 한다
+class AdaptivePoolSizerTest {
+
+    @Autowired
+    AdaptivePoolSizer sizer;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MeterRegistry registry;
+
+    HikariDataSource hikari;
+    int originalSize;
+
+    @BeforeEach
+    public void before() throws Exception {
+        hikari = dataSource.unwrap(HikariDataSource.class);
+        originalSize = hikari.getMaximumPoolSize();
+        sizer.resizeAll(); //이전 테스트의 대기 시간을 비운다
+        hikari.setMaximumPoolSize(originalSize);
+    }
+
+    @AfterEach
+    public void after() {
+        hikari.setMaximumPoolSize(originalSize);
+    }
+
+    @Test
+    public void growsWhenThreadsWaitForConnection() throws Exception {
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        List<Connection> held = new ArrayList<>();
+        CompletableFuture<Void> waiting;
+        try {
+            for (int i = 0; i < originalSize; i++) {
+                held.add(dataSource.getConnection());
+            }
+            waiting = CompletableFuture.runAsync(() -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    connection.isValid(1);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            while (pool.getThreadsAwaitingConnection() == 0) {
+                Thread.sleep(10);
+            }
+
+            sizer.resizeAll();
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+        waiting.join();
+
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(originalSize + 2);
+        assertThat(registry.get("datasource.pool.resize").tag("pool", "primary").tag("direction", "grow").counter().count())
+                .isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void shrinksAfterQuietPeriods() {
+        sizer.resizeAll();
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(originalSize);
+
+        sizer.resizeAll();
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(originalSize - 2);
+        assertThat(hikari.getMinimumIdle()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        hikari.setMaximumPoolSize(4);
+
+        for (int i = 0; i < 10; i++) {
+            sizer.resizeAll();
+        }
+
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(4);
+    }
+}
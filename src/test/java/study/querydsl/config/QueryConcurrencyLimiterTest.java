@@ -0,0 +1,85 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+class QueryConcurrencyLimiterTest {
+
+    QueryConcurrencyLimiter limiter = new QueryConcurrencyLimiter(1, Duration.ofMillis(10));
+
+    @Test
+    public void releasesAfterSyncRequest() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        limiter.doFilter(new MockHttpServletRequest("GET", "/v2/members"), first, new MockFilterChain());
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        limiter.doFilter(new MockHttpServletRequest("GET", "/v2/members"), second, new MockFilterChain());
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(second.getStatus()).isEqualTo(200);
+        assertThat(limiter.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    public void asyncRequestHoldsPermitUntilComplete() throws Exception {
+        MockHttpServletRequest asyncRequest = new MockHttpServletRequest("GET", "/v3/members/async");
+        asyncRequest.setAsyncSupported(true);
+        MockHttpServletResponse asyncResponse = new MockHttpServletResponse();
+        limiter.doFilter(asyncRequest, asyncResponse, (request, response) -> request.startAsync());
+
+        //비동기 요청이 끝나기 전에는 자리가 없어서 503
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        limiter.doFilter(new MockHttpServletRequest("GET", "/v2/members"), rejected, new MockFilterChain());
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+
+        MockAsyncContext asyncContext = (MockAsyncContext) asyncRequest.getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onComplete(new AsyncEvent(asyncContext));
+        }
+        assertThat(limiter.getAvailablePermits()).isEqualTo(1);
+    }
+
+    //content, count 를 동시에 실행하는 요청은 두 자리를 쓴다
+    @Test
+    public void weightedRequestTakesSeveralPermits() throws Exception {
+        QueryConcurrencyLimiter weighted = new QueryConcurrencyLimiter(3, Duration.ofMillis(10),
+                request -> request.getRequestURI().endsWith("/async") ? 2 : 1);
+        MockHttpServletRequest asyncRequest = new MockHttpServletRequest("GET", "/v3/members/async");
+        asyncRequest.setAsyncSupported(true);
+        weighted.doFilter(asyncRequest, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        assertThat(weighted.getAvailablePermits()).isEqualTo(1);
+
+        //남은 한 자리로는 비동기 검색을 받을 수 없다
+        MockHttpServletRequest secondAsync = new MockHttpServletRequest("GET", "/v3/members/async");
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        weighted.doFilter(secondAsync, rejected, new MockFilterChain());
+        assertThat(rejected.getStatus()).isEqualTo(503);
+
+        MockAsyncContext asyncContext = (MockAsyncContext) asyncRequest.getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onComplete(new AsyncEvent(asyncContext));
+        }
+        assertThat(weighted.getAvailablePermits()).isEqualTo(3);
+    }
+
+    //전체보다 큰 weight 는 전체로 줄여서 받는다
+    @Test
+    public void weightIsCappedAtPermits() throws Exception {
+        QueryConcurrencyLimiter weighted = new QueryConcurrencyLimiter(1, Duration.ofMillis(10), request -> 2);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        weighted.doFilter(new MockHttpServletRequest("GET", "/v3/members/async"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(weighted.getAvailablePermits()).isEqualTo(1);
+    }
+}
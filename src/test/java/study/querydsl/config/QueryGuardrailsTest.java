@@ -0,0 +1,179 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.method.HandlerMethod;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PagingStrategy;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class QueryGuardrailsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QueryGuardrails guardrails;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    @Autowired
+    MeterRegistry registry;
+
+    QueryGuardrailInterceptor interceptor;
+
+    MockHttpServletResponse response;
+
+    Map<String, Double> truncatedBefore = new HashMap<>();
+
+    @BeforeEach
+    public void before() {
+        interceptor = new QueryGuardrailInterceptor(guardrails);
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        em.flush();
+        em.clear();
+        resultCache.invalidateAll();
+        for (String limit : List.of("max-rows", "max-page-size", "max-count-limit")) {
+            truncatedBefore.put("limited:" + limit, truncated("limited", limit));
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        guardrails.end();
+        //잘린 결과가 다른 테스트의 캐시 결과로 쓰이지 않도록
+        resultCache.invalidateAll();
+    }
+
+    @QueryLimits(maxRows = 3, maxPageSize = 2, maxCountLimit = 2)
+    void limited() {
+    }
+
+    @QueryLimits(maxRows = 0)
+    void unlimited() {
+    }
+
+    @Test
+    public void truncatesUnboundedQueries() throws Exception {
+        handle("limited");
+
+        assertThat(memberJpaRepository.search(new MemberSearchCondition())).hasSize(3);
+        assertThat(memberJpaRepository.findAll()).hasSize(3);
+        assertThat(memberJpaRepository.findAll_Querydsl()).hasSize(3);
+
+        assertThat(truncated("limited", "max-rows")).isEqualTo(3);
+        assertThat(response.getHeaders(QueryGuardrails.TRUNCATED_HEADER)).containsExactly("max-rows");
+    }
+
+    @Test
+    public void rowsAreNotLimitedOutsideRequest() {
+        assertThat(memberJpaRepository.findAll_Querydsl()).hasSize(5);
+        assertThat(memberJpaRepository.search(new MemberSearchCondition())).hasSize(5);
+    }
+
+
+    @Test
+    public void clampsPageSize() throws Exception {
+        handle("limited");
+
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(new MemberSearchCondition(), PageRequest.of(0, 10));
+
+        assertThat(page.getSize()).isEqualTo(2);
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(memberRepository.searchSlice(new MemberSearchCondition(), null, 10).getContent()).hasSize(2);
+        assertThat(truncated("limited", "max-page-size")).isEqualTo(2);
+    }
+
+    @Test
+    public void clampsCountLimit() throws Exception {
+        handle("limited");
+
+        EstimatedPage<MemberTeamDto> page = memberRepository.searchPageComplex(new MemberSearchCondition(),
+                PageRequest.of(0, 1), Long.MAX_VALUE, PagingStrategy.OFFSET);
+
+        assertThat(page.isTotalCapped()).isTrue();
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(truncated("limited", "max-count-limit")).isEqualTo(1);
+    }
+
+    //깊은 page 로 늘어난 count 상한도 max-count-limit 을 넘지 않는다
+    @Test
+    public void deepPageDoesNotWidenCountLimit() throws Exception {
+        handle("limited");
+
+        EstimatedPage<MemberTeamDto> page = memberRepository.searchPageComplex(new MemberSearchCondition(),
+                PageRequest.of(3, 1), 1, PagingStrategy.OFFSET);
+
+        assertThat(page.isTotalCapped()).isTrue();
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(truncated("limited", "max-count-limit")).isEqualTo(1);
+    }
+
+    @Test
+    public void overrideRemovesLimit() throws Exception {
+        handle("unlimited");
+
+        assertThat(memberJpaRepository.findAll_Querydsl()).hasSize(5);
+    }
+
+    @Test
+    public void appliesTimeoutHint() {
+        Query query = guardrails.apply(em.createQuery("select m from Member m"), false);
+
+        assertThat(query.getHints()).containsEntry("javax.persistence.query.timeout", 5000);
+        assertThat(query.getMaxResults()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    private void handle(String method) throws Exception {
+        HandlerMethod handler = new HandlerMethod(this, getClass().getDeclaredMethod(method));
+        response = new MockHttpServletResponse();
+        interceptor.preHandle(new MockHttpServletRequest(), response, handler);
+    }
+
+    //카운터는 테스트끼리 공유하므로 이번 테스트에서 늘어난 만큼만 본다
+    private double truncated(String method, String limit) {
+        Counter counter = registry.find("query.guardrail.truncated")
+                .tag("endpoint", "QueryGuardrailsTest." + method)
+                .tag("limit", limit)
+                .counter();
+        return (counter == null ? 0 : counter.count()) - truncatedBefore.getOrDefault(method + ":" + limit, 0.0);
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityWriteEvent;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ReplicaCacheEvictionTest {
+
+    MemberCountCache countCache = new MemberCountCache(Duration.ofMinutes(1), 100);
+    ReplicaCacheEviction eviction = new ReplicaCacheEviction(
+            new MemberSearchResultCache(Duration.ofMinutes(1), 1000, 10), countCache, Duration.ofMillis(50));
+
+    @AfterEach
+    public void after() {
+        eviction.shutdown();
+    }
+
+    @Test
+    public void evictsAgainAfterReplicaLag() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        EntityWriteEvent write = new EntityWriteEvent(new Member("member1"), EntityWriteEvent.Type.INSERT);
+
+        //커밋 직후 비운 캐시를 아직 따라오지 않은 replica 의 값으로 다시 채운 상황
+        countCache.onWrite(write);
+        assertThat(countCache.count(condition, () -> 10)).isEqualTo(10);
+        eviction.onWrite(write);
+        assertThat(countCache.count(condition, () -> 11)).isEqualTo(10);
+
+        Thread.sleep(200);
+        assertThat(countCache.count(condition, () -> 11)).isEqualTo(11);
+    }
+}
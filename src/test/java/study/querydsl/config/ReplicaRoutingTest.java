@@ -0,0 +1,180 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+//H2 두 개로 primary / replica 를 흉내 낸다
+//replicate() 로 primary 를 그대로 복사한 뒤 primary 에만 쓰면, replica 에서 읽은 결과는 복사 시점에 머문다
+@SpringBootTest(properties = {
+        "datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "datasource.replica.username=sa",
+        "datasource.replica.lag-query=select lag_seconds from replica_lag",
+        "datasource.replica.max-lag=5s",
+        "datasource.replica.check-interval=1h", //테스트에서 직접 check() 한다
+        "member.search-cache.max-rows=0",
+        "change-feed.settle-time=0s"})
+class ReplicaRoutingTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replica;
+
+    TransactionTemplate tx;
+    MemberSearchCondition condition = new MemberSearchCondition();
+
+    @BeforeEach
+    public void before() throws Exception {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("replicaTeam");
+            em.persist(team);
+            for (int i = 1; i <= 3; i++) {
+                em.persist(new Member("replica" + i, i * 10, team));
+            }
+        });
+        new JdbcTemplate(primary).execute("create table replica_lag(lag_seconds int)");
+        new JdbcTemplate(primary).update("insert into replica_lag values (0)");
+        replicate();
+        condition.setTeamName("replicaTeam");
+
+        //복사 이후에 primary 에만 들어간 회원
+        tx.executeWithoutResult(status -> {
+            Team team = em.createQuery("select t from Team t where t.name = 'replicaTeam'", Team.class).getSingleResult();
+            memberJpaRepository.save(new Member("replica4", 40, team));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'replica%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name = 'replicaTeam'").executeUpdate();
+        });
+        new JdbcTemplate(primary).execute("drop table replica_lag");
+        new JdbcTemplate(replica).execute("drop all objects");
+        lagMonitor.check();
+        countCache.invalidateAll();
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    private void replicate() throws Exception {
+        Path script = Files.createTempFile("replica", ".sql");
+        try {
+            new JdbcTemplate(primary).execute("script to '" + script + "'");
+            JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+            replicaJdbc.execute("drop all objects");
+            replicaJdbc.execute("runscript from '" + script + "'");
+        } finally {
+            Files.delete(script);
+        }
+        lagMonitor.check();
+    }
+
+    @Test
+    public void readOnlySearchReadsReplica() {
+        assertThat(lagMonitor.isAvailable()).isTrue();
+
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactly("replica1", "replica2", "replica3");
+        assertThat(memberRepository.search(condition)).hasSize(3);
+        assertThat(memberJpaRepository.findAll_Querydsl()).extracting("username").doesNotContain("replica4");
+    }
+
+    @Test
+    public void readWriteTransactionReadsPrimary() {
+        Integer size = tx.execute(status -> memberJpaRepository.search(condition).size());
+
+        assertThat(size).isEqualTo(4);
+    }
+
+    @Test
+    public void writesGoToPrimary() {
+        String sql = "select count(*) from member where username like 'replica%'";
+
+        assertThat(new JdbcTemplate(primary).queryForObject(sql, Long.class)).isEqualTo(4);
+        assertThat(new JdbcTemplate(replica).queryForObject(sql, Long.class)).isEqualTo(3);
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToPrimary() {
+        new JdbcTemplate(replica).update("update replica_lag set lag_seconds = 30");
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isAvailable()).isFalse();
+        assertThat(memberJpaRepository.search(condition)).hasSize(4);
+    }
+
+    @Test
+    public void unreachableReplicaFallsBackToPrimary() {
+        new JdbcTemplate(replica).execute("drop table replica_lag");
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isAvailable()).isFalse();
+        assertThat(lagMonitor.getLag()).isNull();
+        assertThat(memberJpaRepository.search(condition)).hasSize(4);
+    }
+
+    //replica 에는 아직 없는 replica4 도 변경 피드에 나온다
+    @Test
+    public void changeFeedReadsPrimary() {
+        assertThat(lagMonitor.isAvailable()).isTrue();
+
+        assertThat(memberRepository.findChangedSince(null, 100).getContent()).extracting("username")
+                .contains("replica4");
+    }
+
+    @Test
+    public void missingLagQueryMeansUnknownLag() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "", Duration.ofSeconds(5), Duration.ofHours(1));
+        try {
+            //연결은 되지만 지연을 모르므로 읽지 않는다
+            assertThat(monitor.isAvailable()).isFalse();
+            assertThat(monitor.getLag()).isNull();
+        } finally {
+            monitor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+//JDK 21 에서만 실행한다: ./gradlew virtualThreadsTest (build.gradle 의 jdk21 toolchain)
+@Tag("virtual-threads")
+@EnabledIf("jdk21")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+class VirtualThreadConfigTest {
+
+    @Autowired
+    ServletWebServerApplicationContext context;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    static boolean jdk21() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    @Test
+    public void tomcatRunsRequestsOnVirtualThreads() throws Exception {
+        Executor executor = ((TomcatWebServer) context.getWebServer()).getTomcat()
+                .getConnector()
+                .getProtocolHandler()
+                .getExecutor();
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+        executor.execute(() -> virtual.complete(isVirtual(Thread.currentThread())));
+
+        assertThat(virtual.get(5, TimeUnit.SECONDS)).isTrue();
+        //QueryConcurrencyLimiter 를 거쳐서 검색 요청이 처리된다
+        assertThat(restTemplate.getForEntity("/v1/members", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    //maximum-pool-size 를 설정하지 않은 테스트 설정에서도 Hikari 기본 풀 크기(10)를 기준으로 나눈다
+    @Test
+    public void searchAndStreamLimitsSplitPool() {
+        assertThat(limiter("queryConcurrencyLimiter").getAvailablePermits()).isEqualTo(8);
+        assertThat(limiter("streamConcurrencyLimiter").getAvailablePermits()).isEqualTo(2);
+
+        assertThat(restTemplate.getForEntity("/v3/members/async", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForEntity("/v1/members/export", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(limiter("queryConcurrencyLimiter").getAvailablePermits()).isEqualTo(8);
+        assertThat(limiter("streamConcurrencyLimiter").getAvailablePermits()).isEqualTo(2);
+    }
+
+    private QueryConcurrencyLimiter limiter(String name) {
+        return (QueryConcurrencyLimiter) context.getBean(name, FilterRegistrationBean.class).getFilter();
+    }
+
+    //빌드는 Java 11 이라 Thread.isVirtual 은 리플렉션으로 부른다
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class ApiExceptionHandlerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void badChangeFeedRequest() throws Exception {
+        mockMvc.perform(get("/v1/members/changes").param("watermark", "not-a-watermark"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/teams/changes").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/members/changes").param("limit", "10"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void badSliceRequest() throws Exception {
+        mockMvc.perform(get("/v4/members").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("sort", "teamName"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("cursor", "tampered"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("sort", "age").param("sort", "username"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("size", "10").param("sort", "age,desc"))
+                .andExpect(status().isOk());
+    }
+
+    //요청 값 검증에서 나온 게 아닌 IllegalArgumentException 은 400 으로 바꾸지 않는다
+    @Test
+    public void otherIllegalArgumentIsNotBadRequest() {
+        InvalidDataAccessApiUsageException e = new InvalidDataAccessApiUsageException("bug", new IllegalArgumentException("bug"));
+
+        assertThatThrownBy(() -> new ApiExceptionHandler().badRequest(e, new MockHttpServletResponse()))
+                .isSameAs(e);
+    }
+}
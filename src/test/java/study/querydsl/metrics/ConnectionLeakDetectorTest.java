@@ -0,0 +1,58 @@
+package study.querydsl.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConnectionLeakDetectorTest {
+
+    //주기적인 검사(threshold / 2 마다)와 상관없이 scan() 을 직접 불러서 확인한다
+    ConnectionLeakDetector detector = new ConnectionLeakDetector(Duration.ofMillis(50));
+
+    @AfterEach
+    public void after() {
+        detector.shutdown();
+    }
+
+    @Test
+    public void countsConnectionHeldPastThresholdOnce() throws Exception {
+        ConnectionLeakDetector.Lease lease = detector.acquired();
+        detector.scan();
+        assertThat(detector.getLeaked()).isEqualTo(0);
+
+        Thread.sleep(100);
+        detector.scan();
+        detector.scan();
+        assertThat(detector.getLeaked()).isEqualTo(1);
+
+        detector.released(lease);
+        detector.scan();
+        assertThat(detector.getLeaked()).isEqualTo(1);
+    }
+
+    @Test
+    public void releasedConnectionIsNotLeak() throws Exception {
+        detector.released(detector.acquired());
+
+        Thread.sleep(100);
+        detector.scan();
+
+        assertThat(detector.getLeaked()).isEqualTo(0);
+    }
+
+    @Test
+    public void longRunningLeaseIsNotTracked() throws Exception {
+        ConnectionLeakDetector.Lease lease = ConnectionLeakDetector.longRunning(detector::acquired);
+        assertThat(lease).isNull();
+
+        //범위를 벗어나면 다시 감지한다
+        ConnectionLeakDetector.Lease tracked = detector.acquired();
+        Thread.sleep(100);
+        detector.scan();
+        assertThat(detector.getLeaked()).isEqualTo(1);
+        detector.released(tracked);
+    }
+}
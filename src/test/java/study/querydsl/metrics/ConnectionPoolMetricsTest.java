@@ -0,0 +1,45 @@
+package study.querydsl.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ConnectionPoolMetricsTest {
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    public void poolMeters() {
+        memberJpaRepository.search(new MemberSearchCondition());
+
+        assertThat(registry.get("hikaricp.connections.acquire").tag("pool", "primary").timer().count()).isPositive();
+        assertThat(registry.get("hikaricp.connections.active").tag("pool", "primary").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("hikaricp.connections.idle").tag("pool", "primary").gauge()).isNotNull();
+        assertThat(registry.get("hikaricp.connections.pending").tag("pool", "primary").gauge().value()).isEqualTo(0);
+        assertThat(registry.get("hikaricp.connections.leaked").tag("pool", "primary").functionCounter().count()).isEqualTo(0);
+    }
+
+    //누수는 ConnectionLeakDetector 만 보고하고 하이카리 자체 감지는 꺼져 있다
+    @Test
+    public void hikariLeakDetectionIsDisabled() throws Exception {
+        assertThat(dataSource.unwrap(HikariDataSource.class).getLeakDetectionThreshold()).isEqualTo(0);
+    }
+}
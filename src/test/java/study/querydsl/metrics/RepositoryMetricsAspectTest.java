@@ -0,0 +1,86 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberFetch;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+
+//테스트 설정은 sample-rate 1.0 이라 모든 호출을 측정한다
+@SpringBootTest
+@Transactional
+class RepositoryMetricsAspectTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 3; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void recordsQueriesAndRowsPerMethod() {
+        DistributionSummary queries = summary("repository.queries", "MemberJpaRepository", "findAll_Querydsl");
+        DistributionSummary rows = summary("repository.rows", "MemberJpaRepository", "findAll_Querydsl");
+        long calls = queries.count();
+        double totalQueries = queries.totalAmount();
+        double totalRows = rows.totalAmount();
+
+        //team 을 건드리지 않으면 회원 조회 한 번
+        memberJpaRepository.findAll_Querydsl(MemberFetch.TEAM);
+
+        assertThat(queries.count()).isEqualTo(calls + 1);
+        assertThat(queries.totalAmount() - totalQueries).isEqualTo(1);
+        assertThat(rows.totalAmount() - totalRows).isEqualTo(3);
+        Timer duration = registry.get("repository.duration")
+                .tag("repository", "MemberJpaRepository")
+                .tag("method", "findAll_Querydsl")
+                .timer();
+        assertThat(duration.count()).isEqualTo(calls + 1);
+    }
+
+    //JpaRepository 에서 물려받은 메서드도 MemberRepository 이름으로 남는다
+    @Test
+    public void springDataRepositoryUsesInterfaceName() {
+        memberRepository.findAll();
+        memberRepository.count();
+
+        assertThat(summary("repository.rows", "MemberRepository", "findAll").totalAmount()).isGreaterThanOrEqualTo(3);
+        assertThat(summary("repository.queries", "MemberRepository", "count").count()).isGreaterThanOrEqualTo(1);
+    }
+
+    private DistributionSummary summary(String name, String repository, String method) {
+        return DistributionSummary.builder(name)
+                .tag("repository", repository)
+                .tag("method", method)
+                .register(registry);
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+//threshold 0 이면 repository 안의 모든 쿼리가 느린 쿼리로 잡힌다
+@SpringBootTest(properties = "metrics.slow-query.threshold=0ms")
+@Transactional
+class SlowQueryCaptureTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    SlowQueryLog slowQueryLog;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        em.persist(new Member("member1", 10));
+        em.flush();
+        slowQueryLog.clear();
+    }
+
+    @Test
+    public void capturesQueryFromRepository() throws InterruptedException {
+        List<Member> result = memberJpaRepository.findByUsername_Querydsl("member1");
+        assertThat(result).hasSize(1);
+
+        List<SlowQuery> queries = slowQueryLog.getQueries();
+        assertThat(queries).hasSize(1);
+        SlowQuery query = queries.get(0);
+        assertThat(query.getRepository()).isEqualTo("MemberJpaRepository");
+        assertThat(query.getMethod()).isEqualTo("findByUsername_Querydsl");
+        assertThat(query.getJpql()).startsWith("select member1").contains("member1.username = ?1");
+        assertThat(query.getSql()).startsWith("select").contains("where member0_.username=?");
+        //요청 밖의 조회라 QueryGuardrails 의 max-rows limit 은 붙지 않는다
+        assertThat(query.getParameters()).containsExactly("String(7)");
+
+        //실행 계획은 별도 스레드에서 채운다
+        for (int i = 0; i < 50 && query.getPlan() == null; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(query.getPlan()).contains("IDX_MEMBER_USERNAME");
+    }
+
+    @Test
+    public void ignoresQueriesOutsideRepositories() {
+        em.createQuery("select m from Member m", Member.class).getResultList();
+
+        assertThat(slowQueryLog.getQueries()).isEmpty();
+    }
+}
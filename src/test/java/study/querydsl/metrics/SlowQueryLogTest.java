@@ -0,0 +1,44 @@
+package study.querydsl.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SlowQueryLogTest {
+
+    SlowQueryLog slowQueryLog = new SlowQueryLog(Duration.ofMillis(100), 2, false);
+
+    @Test
+    public void keepsOnlySlowQueries() {
+        slowQueryLog.check("MemberJpaRepository", "search", null, "select 1", new Object[0], TimeUnit.MILLISECONDS.toNanos(99));
+        assertThat(slowQueryLog.getQueries()).isEmpty();
+
+        slowQueryLog.check("MemberJpaRepository", "search", null, "select 1", new Object[0], TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(slowQueryLog.getQueries()).extracting("elapsedMillis").containsExactly(100L);
+    }
+
+    @Test
+    public void ringBufferKeepsRecent() {
+        for (int i = 1; i <= 3; i++) {
+            slowQueryLog.check("MemberJpaRepository", "query" + i, null, "select 1", new Object[0], TimeUnit.SECONDS.toNanos(1));
+        }
+
+        assertThat(slowQueryLog.getQueries()).extracting("method").containsExactly("query3", "query2");
+    }
+
+    @Test
+    public void splitsJpqlAndRedactsParameters() {
+        String sql = "/* select member1 from Member member1 where member1.username = ?1 */ select\n member0_.member_id"
+                + " from member member0_ where member0_.username=? and member0_.age>=?";
+
+        slowQueryLog.check("MemberRepository", "findAll", null, sql, new Object[]{"member1", 10, null}, TimeUnit.SECONDS.toNanos(1));
+
+        SlowQuery query = slowQueryLog.getQueries().get(0);
+        assertThat(query.getJpql()).isEqualTo("select member1 from Member member1 where member1.username = ?1");
+        assertThat(query.getSql()).isEqualTo("select member0_.member_id from member member0_ where member0_.username=? and member0_.age>=?");
+        assertThat(query.getParameters()).containsExactly("String(7)", "Integer", "null");
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ChangeTombstonePurgerTest {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ChangeTombstonePurger purger;
+
+    @Test
+    public void purgesOnlyTombstonesPastRetention() {
+        insert(-1L, Instant.now().minus(Duration.ofDays(8)));
+        insert(-2L, Instant.now().minus(Duration.ofDays(1)));
+
+        assertThat(purger.purge()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("select entity_id from change_tombstone where entity_id < 0", Long.class))
+                .containsExactly(-2L);
+    }
+
+    private void insert(long id, Instant deletedAt) {
+        jdbcTemplate.update("insert into change_tombstone (entity_type, entity_id, deleted_at) values ('Member', ?, ?)",
+                id, Timestamp.from(deletedAt));
+    }
+}
@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+//content, count 쿼리는 별도 스레드의 별도 트랜잭션에서 실행되므로 커밋된 데이터만 보인다
+//그래서 이 테스트는 롤백하지 않고 직접 지운다
+@SpringBootTest
+class MemberAsyncRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberAsyncRepository memberAsyncRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    MeterRegistry registry;
+
+    TransactionTemplate tx;
+    MemberSearchCondition condition = new MemberSearchCondition();
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("asyncTeam");
+            em.persist(team);
+            for (int i = 1; i <= 5; i++) {
+                em.persist(new Member("async" + i, i * 10, team));
+            }
+        });
+        condition.setTeamName("asyncTeam");
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'async%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name = 'asyncTeam'").executeUpdate();
+        });
+        //JPQL 벌크 delete 는 이벤트가 없으므로 직접 비운다
+        resultCache.invalidateAll();
+        countCache.invalidateAll();
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    @Test
+    public void searchPageComplexAsync() throws Exception {
+        CompletableFuture<Page<MemberTeamDto>> future = memberAsyncRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+
+        Page<MemberTeamDto> result = future.get(5, TimeUnit.SECONDS);
+        assertThat(result.getContent()).extracting("username").containsExactly("async1", "async2");
+        assertThat(result.getTotalElements()).isEqualTo(5);
+        assertThat(result.getTotalPages()).isEqualTo(3);
+    }
+
+    @Test
+    public void sameResultAsSync() throws Exception {
+        PageRequest pageRequest = PageRequest.of(2, 2);
+        Page<MemberTeamDto> async = memberAsyncRepository.searchPageComplex(condition, pageRequest).get(5, TimeUnit.SECONDS);
+        resultCache.invalidateAll();
+        Page<MemberTeamDto> sync = memberRepository.searchPageComplex(condition, pageRequest);
+
+        assertThat(async.getContent()).isEqualTo(sync.getContent());
+        assertThat(async.getTotalElements()).isEqualTo(sync.getTotalElements());
+    }
+
+    //member-query-* 스레드에서 실행한 content, count 쿼리도 호출한 메서드의 메트릭에 들어간다
+    @Test
+    public void queriesOnExecutorAreRecorded() throws Exception {
+        DistributionSummary queries = DistributionSummary.builder("repository.queries")
+                .tag("repository", "MemberAsyncRepository")
+                .tag("method", "searchPageComplex")
+                .register(registry);
+        long calls = queries.count();
+        double total = queries.totalAmount();
+
+        memberAsyncRepository.searchPageComplex(condition, PageRequest.of(0, 2)).get(5, TimeUnit.SECONDS);
+
+        assertThat(queries.count()).isEqualTo(calls + 1);
+        assertThat(queries.totalAmount() - total).isGreaterThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    Member first;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        //chunk-size(100) 보다 많이
+        for (int i = 0; i < 250; i++) {
+            Member member = new Member("member" + i, i % 100, i % 2 == 0 ? teamA : teamB);
+            em.persist(member);
+            if (i == 0) {
+                first = member;
+            }
+        }
+        em.flush();
+    }
+
+    @Test
+    public void updateInChunks() {
+        SqlStatementRecorder.clear();
+
+        long count = memberBulkRepository.update(member.age.lt(50), update -> update.set(member.username, "비회원"));
+
+        //age 0~49 가 150명 -> 100명, 50명 두 번에 나눠서 update
+        assertThat(count).isEqualTo(150);
+        assertThat(SqlStatementRecorder.statements()).filteredOn(sql -> sql.startsWith("update member")).hasSize(2);
+        //대상 회원은 update 할 때까지 락을 건다
+        assertThat(SqlStatementRecorder.statements()).filteredOn(sql -> sql.startsWith("select"))
+                .first().asString().endsWith("for update");
+
+        //영속성 컨텍스트에 있던 회원은 detach 되어 다시 조회하면 바뀐 값이 보인다
+        assertThat(em.contains(first)).isFalse();
+        assertThat(em.find(Member.class, first.getId()).getUsername()).isEqualTo("비회원");
+    }
+
+    @Test
+    public void deleteInChunksWithTeamCondition() {
+        SqlStatementRecorder.clear();
+
+        long count = memberBulkRepository.delete(team.name.eq("teamB").and(member.age.goe(50)));
+
+        //teamB(홀수 번째) 중 age 50 이상은 50명
+        assertThat(count).isEqualTo(50);
+        List<Long> remaining = em.createQuery("select m.id from Member m join m.team t where t.name = 'teamB'", Long.class)
+                .getResultList();
+        assertThat(remaining).hasSize(75);
+        //락은 회원 행에만 건다: team 조건은 서브쿼리에서만 조인한다
+        String lock = SqlStatementRecorder.statements().stream()
+                .filter(sql -> sql.endsWith("for update"))
+                .findFirst().orElseThrow();
+        assertThat(lock.substring(0, lock.indexOf(" where "))).doesNotContain("team");
+    }
+}
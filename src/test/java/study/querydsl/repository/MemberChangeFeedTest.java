@@ -0,0 +1,162 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.ChangeFeed;
+import study.querydsl.dto.MemberChangeDto;
+import study.querydsl.dto.TeamChangeDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class MemberChangeFeedTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+
+    Team teamA;
+    List<Member> members = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            Member member = new Member("member" + i, i, teamA);
+            em.persist(member);
+            members.add(member);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void pageThroughChanges() {
+        ChangeFeed<MemberChangeDto> first = memberRepository.findChangedSince(null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member0", "member1", "member2");
+        assertThat(first.isHasMore()).isTrue();
+
+        ChangeFeed<MemberChangeDto> second = memberRepository.findChangedSince(first.getWatermark(), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.isHasMore()).isFalse();
+        assertThat(second.getContent()).allSatisfy(change -> {
+            assertThat(change.getVersion()).isZero();
+            assertThat(change.getTeamId()).isEqualTo(teamA.getId());
+        });
+
+        //바뀐 것이 없으면 watermark 는 그대로
+        ChangeFeed<MemberChangeDto> empty = memberRepository.findChangedSince(second.getWatermark(), 3);
+        assertThat(empty.getContent()).isEmpty();
+        assertThat(empty.getWatermark()).isEqualTo(second.getWatermark());
+    }
+
+    @Test
+    public void updatedMemberComesAgain() {
+        String watermark = memberRepository.findChangedSince(null, 100).getWatermark();
+
+        Member findMember = em.find(Member.class, members.get(1).getId());
+        findMember.setAge(30);
+        em.flush();
+        em.clear();
+
+        ChangeFeed<MemberChangeDto> changes = memberRepository.findChangedSince(watermark, 100);
+        assertThat(changes.getContent()).hasSize(1);
+        MemberChangeDto change = changes.getContent().get(0);
+        assertThat(change.getUsername()).isEqualTo("member1");
+        assertThat(change.getAge()).isEqualTo(30);
+        assertThat(change.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkUpdateBumpsVersion() {
+        String watermark = memberRepository.findChangedSince(null, 100).getWatermark();
+
+        memberBulkRepository.update(member.age.goe(3), update -> update.set(member.username, "비회원"));
+
+        ChangeFeed<MemberChangeDto> changes = memberRepository.findChangedSince(watermark, 100);
+        assertThat(changes.getContent()).extracting("username").containsExactly("비회원", "비회원");
+        assertThat(changes.getContent()).extracting("version").containsOnly(1L);
+    }
+
+    @Test
+    public void deletedMemberComesAsTombstone() {
+        String watermark = memberRepository.findChangedSince(null, 100).getWatermark();
+
+        em.remove(em.find(Member.class, members.get(2).getId()));
+        memberBulkRepository.delete(member.age.goe(3));
+        em.flush();
+
+        ChangeFeed<MemberChangeDto> changes = memberRepository.findChangedSince(watermark, 100);
+        assertThat(changes.getContent()).extracting("memberId")
+                .containsExactly(members.get(2).getId(), members.get(3).getId(), members.get(4).getId());
+        assertThat(changes.getContent()).allSatisfy(change -> {
+            assertThat(change.isDeleted()).isTrue();
+            assertThat(change.getUsername()).isNull();
+        });
+
+        //삭제도 watermark 뒤부터만
+        assertThat(memberRepository.findChangedSince(changes.getWatermark(), 100).getContent()).isEmpty();
+    }
+
+    @Test
+    public void limitMustBePositive() {
+        assertThatThrownBy(() -> memberRepository.findChangedSince(null, 0))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> teamJpaRepository.findChangedSince(null, 0))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    public void malformedWatermark() {
+        assertThatThrownBy(() -> memberRepository.findChangedSince("not-a-watermark", 10))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    public void teamRename() {
+        String watermark = teamJpaRepository.findChangedSince(null, 100).getWatermark();
+
+        Team findTeam = em.find(Team.class, teamA.getId());
+        findTeam.setName("teamB");
+        em.flush();
+
+        ChangeFeed<TeamChangeDto> changes = teamJpaRepository.findChangedSince(watermark, 100);
+        assertThat(changes.getContent()).extracting("name").containsExactly("teamB");
+        assertThat(changes.getContent().get(0).getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    public void deletedTeamComesAsTombstone() {
+        Team teamB = new Team("teamB");
+        em.persist(teamB);
+        em.flush();
+        String watermark = teamJpaRepository.findChangedSince(null, 100).getWatermark();
+
+        em.remove(teamB);
+        em.flush();
+
+        ChangeFeed<TeamChangeDto> changes = teamJpaRepository.findChangedSince(watermark, 100);
+        assertThat(changes.getContent()).extracting("teamId").containsExactly(teamB.getId());
+        assertThat(changes.getContent().get(0).isDeleted()).isTrue();
+    }
+}
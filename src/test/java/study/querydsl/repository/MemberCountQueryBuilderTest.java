@@ -0,0 +1,98 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberCountQueryBuilderTest {
+
+    @Autowired
+    EntityManager em;
+
+    MemberCountQueryBuilder countQueryBuilder;
+
+    @BeforeEach
+    public void before() {
+        countQueryBuilder = new MemberCountQueryBuilder(em, new JPAQueryFactory(em));
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    @Test
+    public void countWithoutTeamCondition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        String jpql = countQueryBuilder.count(condition).toString();
+        assertThat(jpql).contains("count(member1.id)").doesNotContain("join");
+
+        assertThat(countQueryBuilder.count(condition).fetchOne()).isEqualTo(4);
+    }
+
+    @Test
+    public void countWithTeamCondition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        String jpql = countQueryBuilder.count(condition).toString();
+        assertThat(jpql).contains("count(member1.id)").contains("inner join member1.team as team");
+
+        assertThat(countQueryBuilder.count(condition).fetchOne()).isEqualTo(2);
+    }
+
+    @Test
+    public void cappedCountStopsAtLimit() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        em.flush();
+
+        assertThat(((Number) countQueryBuilder.cappedCount(condition, 2).getSingleResult()).longValue()).isEqualTo(2);
+        assertThat(((Number) countQueryBuilder.cappedCount(condition, 10).getSingleResult()).longValue()).isEqualTo(4);
+
+        condition.setTeamName("teamB");
+        condition.setAgeLoe(30);
+        assertThat(((Number) countQueryBuilder.cappedCount(condition, 10).getSingleResult()).longValue()).isEqualTo(1);
+    }
+
+    //cappedCount 는 ids 쿼리를 번역한 SQL 이라 상한이 넉넉하면 count 와 같아야 한다
+    @Test
+    public void cappedCountMatchesCount() {
+        em.flush();
+        MemberSearchCondition empty = new MemberSearchCondition();
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("member3");
+        MemberSearchCondition byTeamAndAge = new MemberSearchCondition();
+        byTeamAndAge.setTeamName("teamA");
+        byTeamAndAge.setAgeGoe(10);
+        byTeamAndAge.setAgeLoe(15);
+        MemberSearchCondition byAge = new MemberSearchCondition();
+        byAge.setAgeGoe(20);
+        byAge.setAgeLoe(40);
+
+        for (MemberSearchCondition condition : List.of(empty, byUsername, byTeamAndAge, byAge)) {
+            long capped = ((Number) countQueryBuilder.cappedCount(condition, 100).getSingleResult()).longValue();
+            assertThat(capped).as(condition.toString()).isEqualTo(countQueryBuilder.count(condition).fetchOne());
+        }
+    }
+}
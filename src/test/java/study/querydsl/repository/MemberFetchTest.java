@@ -0,0 +1,122 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.support.SqlAssertions.assertNoNPlusOne;
+
+//엔티티로 조회한 뒤 연관관계(Member.team, Team.members)를 돌면서 접근해도 팀/회원마다 쿼리가 나가지 않는지 확인
+@SpringBootTest
+@Transactional
+class MemberFetchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    JPAQueryFactory queryFactory;
+    PersistenceUnitUtil util;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + (i * 2), i * 2, team));
+            em.persist(new Member("member" + (i * 2 + 1), i * 2 + 1, team));
+        }
+        em.persist(new Member("noTeam"));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void lazyTeamIsBatchFetched() {
+        List<String> statements = assertNoNPlusOne(() ->
+                memberJpaRepository.findAll_Querydsl().forEach(this::touchTeam));
+
+        assertThat(statements).hasSize(2);
+        assertThat(statements.get(1)).contains("from team").contains(" in (");
+    }
+
+    @Test
+    public void teamFetchJoin() {
+        List<Member> result = new ArrayList<>();
+        List<String> statements = assertNoNPlusOne(() -> {
+            result.addAll(memberJpaRepository.findAll_Querydsl(MemberFetch.TEAM));
+            result.forEach(this::touchTeam);
+        });
+
+        assertThat(statements).hasSize(1);
+        assertThat(result).hasSize(7);
+        assertThat(result).filteredOn(m -> m.getTeam() != null)
+                .allMatch(m -> util.isLoaded(m.getTeam()));
+    }
+
+    @Test
+    public void predicateExecutorFindAll() {
+        List<String> statements = assertNoNPlusOne(() ->
+                memberRepository.findAll(member.age.goe(2)).forEach(this::touchTeam));
+
+        assertThat(statements).hasSize(2);
+    }
+
+    @Test
+    public void predicateFindAllWithFetchJoin() {
+        List<String> statements = assertNoNPlusOne(() ->
+                memberRepository.findAll(member.age.goe(2), MemberFetch.TEAM).forEach(this::touchTeam));
+
+        assertThat(statements).hasSize(1);
+    }
+
+    @Test
+    public void teamMembersAreBatchFetched() {
+        List<String> statements = assertNoNPlusOne(() -> queryFactory
+                .selectFrom(team)
+                .fetch()
+                .forEach(t -> assertThat(t.getMembers()).hasSize(2)));
+
+        assertThat(statements).hasSize(2);
+    }
+
+    @Test
+    public void detectsNPlusOne() {
+        List<Team> teams = queryFactory.selectFrom(team).fetch();
+
+        //팀마다 회원을 따로 조회하면 같은 SQL 이 팀 수만큼 반복된다
+        assertThatThrownBy(() -> assertNoNPlusOne(() -> teams.forEach(t -> queryFactory
+                .selectFrom(member)
+                .where(member.team.eq(t))
+                .fetch())))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("N+1");
+    }
+
+    private void touchTeam(Member m) {
+        if (m.getTeam() != null) {
+            m.getTeam().getName();
+        }
+    }
+}
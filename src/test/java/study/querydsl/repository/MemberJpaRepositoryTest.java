@@ -11,6 +11,7 @@ import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -66,4 +67,25 @@ class MemberJpaRepositoryTest {
 
         assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchStreamTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 2500; i++) {
+            em.persist(new Member("member" + i, i % 100, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(50);
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        long count = memberJpaRepository.searchStream(condition, result::add);
+
+        //중간에 영속성 컨텍스트를 비워도 끝까지 읽어야 한다
+        assertThat(count).isEqualTo(1250);
+        assertThat(result).hasSize(1250);
+        assertThat(result).allSatisfy(dto -> assertThat(dto.getAge()).isGreaterThanOrEqualTo(50));
+    }
+}
@@ -6,18 +6,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.EstimatedPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementRecorder;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.support.SqlAssertions.assertQueryCount;
 
 @SpringBootTest
 @Transactional
@@ -65,10 +71,13 @@ public class MemberRepositoryTest {
         condition.setAgeGoe(35);
         condition.setAgeLoe(40);
         condition.setTeamName("teamB");
+        em.flush();
+        SqlStatementRecorder.clear();
 
         List<MemberTeamDto> result = memberRepository.search(condition);
 
         assertThat(result).extracting("username").containsExactly("member4");
+        assertQueryCount(1);
     }
 
     @Test
@@ -90,11 +99,209 @@ public class MemberRepositoryTest {
 
         MemberSearchCondition condition = new MemberSearchCondition();
         PageRequest pageRequest = PageRequest.of(0, 3);
+        em.flush();
+        SqlStatementRecorder.clear();
 
         Page<MemberTeamDto> result = memberRepository.searchPageSimple(condition, pageRequest);
 
         assertThat(result.getSize()).isEqualTo(3);
         assertThat(result.getContent()).extracting("username").containsExactly("member1","member2", "member3");
+        //content + count
+        assertQueryCount(2);
+    }
+
+    @Test
+    public void searchPageComplexSkipsCountOnLastPage() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        SqlStatementRecorder.clear();
+
+        //마지막 페이지는 content 크기로 total 을 알 수 있으므로 count 쿼리를 생략한다
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(1, 3));
+
+        assertThat(result.getContent()).extracting("username").containsExactly("member4");
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertQueryCount(1);
+    }
+
+    @Test
+    public void searchPageComplexEstimated() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        EstimatedPage<MemberTeamDto> capped = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1), 2);
+        assertThat(capped.getContent()).extracting("username").containsExactly("member1");
+        assertThat(capped.isTotalCapped()).isTrue();
+        assertThat(capped.getTotalElements()).isEqualTo(2);
+        assertThat(capped.hasNext()).isTrue();
+
+        EstimatedPage<MemberTeamDto> exact = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1), 10);
+        assertThat(exact.isTotalCapped()).isFalse();
+        assertThat(exact.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    public void searchPageComplexIdFirst() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 1; i <= 6; i++) {
+            em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+        }
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        PageRequest pageRequest = PageRequest.of(1, 2);
+
+        SqlStatementRecorder.clear();
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(condition, pageRequest, PagingStrategy.ID_FIRST);
+
+        assertThat(result.getContent()).extracting("username").containsExactly("member4", "member5");
+        assertThat(result.getContent()).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(result.getTotalElements()).isEqualTo(5);
+
+        //1단계는 team 을 조인하지 않고 id 만, 2단계는 그 id 만 조인
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements.get(0)).startsWith("select member0_.member_id as col_0_0_ from member").doesNotContain("join");
+        assertThat(statements.get(1)).contains("left outer join team", "in (? , ?)");
+
+        Page<MemberTeamDto> offset = memberRepository.searchPageComplex(condition, pageRequest, PagingStrategy.OFFSET);
+        assertThat(offset.getContent()).isEqualTo(result.getContent());
+    }
+
+    @Test
+    public void searchPageComplexSameOrderForBothStrategies() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        //나이가 같은 회원이 여러 명이면 id 순서로 정한다
+        for (int i = 1; i <= 6; i++) {
+            em.persist(new Member("member" + i, i <= 3 ? 30 : 20, teamA));
+        }
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        for (int page = 0; page < 3; page++) {
+            PageRequest pageRequest = PageRequest.of(page, 2, Sort.by(Sort.Direction.DESC, "age"));
+            Page<MemberTeamDto> offset = memberRepository.searchPageComplex(condition, pageRequest, PagingStrategy.OFFSET);
+            Page<MemberTeamDto> idFirst = memberRepository.searchPageComplex(condition, pageRequest, PagingStrategy.ID_FIRST);
+
+            assertThat(idFirst.getContent()).isEqualTo(offset.getContent());
+            assertThat(offset.getContent()).extracting("username")
+                    .containsExactly("member" + (page * 2 + 1), "member" + (page * 2 + 2));
+        }
+
+        assertThatThrownBy(() -> memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 2, Sort.by("teamName")), PagingStrategy.OFFSET))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    public void searchSlice() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1",10, teamA);
+        Member member2 = new Member("member2",20, teamA);
+
+        Member member3 = new Member("member3",30, teamB);
+        Member member4 = new Member("member4",40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        CursorSlice<MemberTeamDto> first = memberRepository.searchSlice(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        CursorSlice<MemberTeamDto> second = memberRepository.searchSlice(condition, first.getNextCursor(), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void searchSliceByAgeDesc() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("member1",10, teamA));
+        em.persist(new Member("member2",20, teamA));
+        em.persist(new Member("member3",20, teamA));
+        em.persist(new Member("member4",40, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        Sort sort = Sort.by(Sort.Direction.DESC, "age");
+
+        CursorSlice<MemberTeamDto> first = memberRepository.searchSlice(condition, null, 2, sort);
+        assertThat(first.getContent()).extracting("username").containsExactly("member4", "member3");
+
+        //같은 나이(20)가 페이지 경계에 걸려도 member.id 로 이어서 조회한다
+        CursorSlice<MemberTeamDto> second = memberRepository.searchSlice(condition, first.getNextCursor(), 2, sort);
+        assertThat(second.getContent()).extracting("username").containsExactly("member2", "member1");
+        assertThat(second.isHasNext()).isFalse();
+
+        assertThatThrownBy(() -> memberRepository.searchSlice(condition, first.getNextCursor(), 2, Sort.by("username")))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> memberRepository.searchSlice(condition, null, 0, sort))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+    }
+
+    //username 이 null 인 회원도 빠지거나 반복되지 않고 한 번씩 나온다
+    @Test
+    public void searchSliceByUsernameWithNulls() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member nullFirst = new Member(null, 10, teamA);
+        Member nullSecond = new Member(null, 20, teamA);
+        em.persist(new Member("memberB", 30, teamA));
+        em.persist(nullFirst);
+        em.persist(new Member("memberA", 40, teamA));
+        em.persist(nullSecond);
+
+        assertThat(sliceAll(Sort.by(Sort.Direction.ASC, "username")))
+                .containsExactly(nullFirst.getId(), nullSecond.getId(), idOf("memberA"), idOf("memberB"));
+        assertThat(sliceAll(Sort.by(Sort.Direction.DESC, "username")))
+                .containsExactly(idOf("memberB"), idOf("memberA"), nullSecond.getId(), nullFirst.getId());
+    }
+
+    @Test
+    public void searchSliceRejectsSeveralOrders() {
+        assertThatThrownBy(() -> memberRepository.searchSlice(new MemberSearchCondition(), null, 2, Sort.by("age", "username")))
+                .hasCauseInstanceOf(InvalidRequestException.class);
+    }
+
+    //한 건씩 끝까지 넘기면서 id 를 모은다
+    private List<Long> sliceAll(Sort sort) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorSlice<MemberTeamDto> slice = memberRepository.searchSlice(new MemberSearchCondition(), cursor, 1, sort);
+            slice.getContent().forEach(dto -> ids.add(dto.getMemberId()));
+            cursor = slice.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private Long idOf(String username) {
+        return em.createQuery("select m.id from Member m where m.username = :username", Long.class)
+                .setParameter("username", username)
+                .getSingleResult();
     }
 
     @Test
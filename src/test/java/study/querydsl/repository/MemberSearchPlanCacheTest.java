@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberSearchPlanCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSearchPlanCache planCache;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+    }
+
+    @Test
+    public void sameShapeReusesPlan() {
+        MemberSearchCondition teamA = new MemberSearchCondition();
+        teamA.setTeamName("teamA");
+        teamA.setAgeGoe(15);
+
+        MemberSearchCondition teamB = new MemberSearchCondition();
+        teamB.setTeamName("teamB");
+        teamB.setAgeGoe(35);
+
+        double misses = planCacheCount("miss");
+        double hits = planCacheCount("hit");
+
+        List<MemberTeamDto> resultA = planCache.search(teamA);
+        List<MemberTeamDto> resultB = planCache.search(teamB);
+
+        assertThat(resultA).extracting("username").containsExactly("member2");
+        assertThat(resultB).extracting("username").containsExactly("member4");
+        //처음 보는 모양이면 miss 1 + hit 1, 다른 테스트에서 이미 만들었으면 hit 2
+        assertThat(planCacheCount("miss") - misses + planCacheCount("hit") - hits).isEqualTo(2);
+        assertThat(planCacheCount("hit") - hits).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void sameResultAsQuerydsl() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(30);
+
+        assertThat(planCache.search(condition)).isEqualTo(memberJpaRepository.searchByBuilder(condition));
+        assertThat(planCache.search(condition, 1, 1)).extracting("username").containsExactly("member3");
+        assertThat(registry.get("member.search.plan.compiled").gauge().value()).isGreaterThanOrEqualTo(2);
+    }
+
+    private double planCacheCount(String result) {
+        return registry.get("member.search.plan.cache").tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,145 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class MemberTeamJoinPlannerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        resultCache.invalidateAll();
+        SqlStatementRecorder.clear();
+    }
+
+    @Test
+    public void projectionOnlyUsesLeftJoin() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        List<MemberTeamDto> result = memberJpaRepository.search(condition);
+
+        assertThat(result).extracting("teamName").containsExactly("teamA", "teamB", "teamB");
+        String sql = SqlStatementRecorder.last();
+        assertThat(sql).doesNotContain("cross join");
+        assertThat(sql).containsOnlyOnce("left outer join team");
+    }
+
+    @Test
+    public void teamConditionUsesInnerJoin() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        List<MemberTeamDto> byWhereParam = memberJpaRepository.search(condition);
+        String whereParamSql = SqlStatementRecorder.last();
+        List<MemberTeamDto> byBuilder = memberJpaRepository.searchByBuilder(condition);
+        String builderSql = SqlStatementRecorder.last();
+        //두 search 는 같은 결과 캐시를 쓰므로 비워야 쿼리가 다시 나간다
+        resultCache.invalidateAll();
+        List<MemberTeamDto> byCustom = memberRepository.search(condition);
+        String customSql = SqlStatementRecorder.last();
+
+        assertThat(byWhereParam).extracting("username").containsExactly("member3", "member4");
+        assertThat(byBuilder).isEqualTo(byWhereParam);
+        assertThat(byCustom).isEqualTo(byWhereParam);
+        for (String sql : List.of(whereParamSql, builderSql, customSql)) {
+            assertThat(sql).doesNotContain("cross join");
+            assertThat(sql).containsOnlyOnce("inner join team");
+        }
+    }
+
+    @Test
+    public void countWithoutTeamDoesNotJoin() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeLoe(30);
+
+        memberRepository.searchPageSimple(condition, PageRequest.of(0, 2));
+
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements).hasSize(2);
+        assertThat(statements.get(0)).containsOnlyOnce("left outer join team");
+        assertThat(statements.get(1)).startsWith("select count(").doesNotContain("join");
+    }
+
+    //team 이 null 인 행도 참이 될 수 있는 조건은 inner join 으로 바꾸면 결과가 달라진다
+    @Test
+    public void isNullUsesLeftJoin() {
+        em.persist(new Member("member5", 50));
+        em.flush();
+
+        assertThat(MemberTeamJoinPlanner.plan(member.username, team.name.isNull())).isEqualTo(MemberTeamJoinPlanner.LEFT);
+        assertThat(usernames(team.name.isNull())).containsExactly("member5");
+    }
+
+    @Test
+    public void orUsesLeftJoin() {
+        em.persist(new Member("member5", 50));
+        em.flush();
+
+        Predicate teamBOrOld = team.name.eq("teamB").or(member.age.gt(45));
+        assertThat(MemberTeamJoinPlanner.plan(member.username, teamBOrOld)).isEqualTo(MemberTeamJoinPlanner.LEFT);
+        assertThat(usernames(teamBOrOld)).containsExactly("member3", "member4", "member5");
+    }
+
+    //최상위 and 중 하나라도 team 을 직접 비교하면 inner join
+    @Test
+    public void topLevelComparisonUsesInnerJoin() {
+        assertThat(MemberTeamJoinPlanner.plan(member.username, member.age.gt(10).and(team.name.in("teamA", "teamB"))))
+                .isEqualTo(MemberTeamJoinPlanner.INNER);
+        assertThat(MemberTeamJoinPlanner.plan(member.username, new BooleanBuilder(team.name.startsWith("team"))))
+                .isEqualTo(MemberTeamJoinPlanner.INNER);
+        assertThat(MemberTeamJoinPlanner.plan(member.username, team.name.eq("teamA").not()))
+                .isEqualTo(MemberTeamJoinPlanner.LEFT);
+    }
+
+    private List<String> usernames(Predicate where) {
+        return MemberTeamJoinPlanner.plan(member.username, where)
+                .applyTo(new JPAQueryFactory(em).select(member.username).from(member))
+                .where(where)
+                .orderBy(member.username.asc())
+                .fetch();
+    }
+}
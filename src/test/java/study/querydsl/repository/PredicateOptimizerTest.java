@@ -0,0 +1,150 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class PredicateOptimizerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void mergeOverlappingRanges() {
+        Predicate optimized = PredicateOptimizer.optimize(member.age.between(10, 40).and(member.age.goe(20)));
+
+        assertThat(optimized).isEqualTo(member.age.between(20, 40));
+    }
+
+    @Test
+    public void flattenAndRemoveDuplicates() {
+        BooleanBuilder builder = new BooleanBuilder();
+        builder.and(member.username.eq("member1"));
+        builder.and(member.age.goe(10).and(member.username.eq("member1")));
+
+        Predicate optimized = PredicateOptimizer.optimize(builder);
+
+        assertThat(optimized).isEqualTo(member.age.goe(10).and(member.username.eq("member1")));
+    }
+
+    @Test
+    public void sameConditionInAnyOrderIsSamePredicate() {
+        Predicate first = PredicateOptimizer.optimize(member.username.eq("member1").and(member.age.lt(30)));
+        Predicate second = PredicateOptimizer.optimize(member.age.lt(30).and(member.username.eq("member1")));
+
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    public void mergeEqualsInOr() {
+        Predicate optimized = PredicateOptimizer.optimize(member.age.eq(10).or(member.age.eq(30)).or(member.age.eq(10)));
+
+        assertThat(optimized).isEqualTo(member.age.in(10, 30));
+    }
+
+    @Test
+    public void pointRange() {
+        Predicate optimized = PredicateOptimizer.optimize(member.age.goe(20).and(member.age.loe(20)));
+
+        assertThat(optimized).isEqualTo(member.age.eq(20));
+    }
+
+    @Test
+    public void unsatisfiable() {
+        assertThat(PredicateOptimizer.optimize(member.age.gt(20).and(member.age.lt(10))))
+                .isSameAs(PredicateOptimizer.UNSATISFIABLE);
+        assertThat(PredicateOptimizer.optimize(member.age.gt(20).and(member.age.loe(20))))
+                .isSameAs(PredicateOptimizer.UNSATISFIABLE);
+        assertThat(PredicateOptimizer.optimize(member.age.in(10, 20).and(member.age.goe(30))))
+                .isSameAs(PredicateOptimizer.UNSATISFIABLE);
+        assertThat(PredicateOptimizer.optimize(member.age.eq(20).and(member.age.ne(20))))
+                .isSameAs(PredicateOptimizer.UNSATISFIABLE);
+        //or 의 한쪽만 불가능하면 나머지만 남는다
+        assertThat(PredicateOptimizer.optimize(member.age.gt(20).and(member.age.lt(10)).or(member.username.eq("member1"))))
+                .isEqualTo(member.username.eq("member1"));
+    }
+
+    @Test
+    public void notKeepsNullablePaths() {
+        //version 은 null 일 수 있다: not(unknown) 은 unknown 이라 조건 없음으로 바꾸면 안 된다
+        Predicate nullable = member.version.gt(5L).and(member.version.lt(1L)).not();
+        assertThat(PredicateOptimizer.optimize(nullable)).isSameAs(nullable);
+        //연관관계를 거친 경로도 outer join 이면 null 이 될 수 있다
+        Predicate throughTeam = member.team.id.gt(5L).and(member.team.id.lt(1L)).not();
+        assertThat(PredicateOptimizer.optimize(throughTeam)).isSameAs(throughTeam);
+
+        //age 는 int 라 null 이 아니다
+        assertThat(PredicateOptimizer.optimize(member.age.gt(20).and(member.age.lt(10)).not())).isNull();
+        assertThat(PredicateOptimizer.optimize(member.id.goe(1L).not().not())).isEqualTo(member.id.goe(1L));
+    }
+
+    @Test
+    public void stringsAreNotMerged() {
+        //대소문자를 구분하지 않는 collation 이면 'member1' 과 'MEMBER1' 은 같다
+        Predicate predicate = member.username.eq("member1").and(member.username.eq("MEMBER1"));
+        assertThat(PredicateOptimizer.optimize(predicate)).isNotSameAs(PredicateOptimizer.UNSATISFIABLE);
+        assertThat(PredicateOptimizer.optimize(member.username.goe("b").and(member.username.goe("a"))))
+                .isEqualTo(member.username.goe("a").and(member.username.goe("b")));
+
+        //or 로 묶인 eq 는 그대로 in 으로 합친다 (DB 가 같은 기준으로 비교한다)
+        assertThat(PredicateOptimizer.optimize(member.username.eq("member1").or(member.username.eq("member2"))))
+                .isEqualTo(member.username.in("member1", "member2"));
+    }
+
+    @Test
+    public void unsatisfiableSkipsDatabase() {
+        Predicate impossible = member.age.between(10, 40).and(member.age.gt(50));
+        SqlStatementRecorder.clear();
+
+        assertThat(memberRepository.findAll(impossible)).isEmpty();
+        assertThat(memberRepository.count(impossible)).isZero();
+        assertThat(memberRepository.exists(impossible)).isFalse();
+        assertThat(memberRepository.findOne(impossible)).isEmpty();
+        Page<Member> page = memberRepository.findAll(impossible, PageRequest.of(0, 10));
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isZero();
+
+        assertThat(SqlStatementRecorder.statements()).isEmpty();
+    }
+
+    @Test
+    public void optimizedPredicateSameResult() {
+        Predicate predicate = member.age.between(10, 40).and(member.age.goe(20)).and(member.age.ne(30));
+
+        assertThat(memberRepository.findAll(predicate)).extracting("username").containsExactlyInAnyOrder("member2", "member4");
+        assertThat(memberRepository.count(predicate)).isEqualTo(2);
+        assertThat(memberRepository.findAll(predicate, MemberFetch.TEAM)).hasSize(2);
+        assertThat(memberRepository.findAll(predicate, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(2);
+        assertThat(memberRepository.findAll(new BooleanBuilder())).hasSize(4);
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.test.StepVerifier;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+//Flux 는 별도 스레드의 별도 EntityManager 에서 읽으므로 커밋된 데이터만 보인다
+@SpringBootTest
+class ReactiveMemberSearchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    TransactionTemplate tx;
+    MemberSearchCondition condition = new MemberSearchCondition();
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("reactiveTeam");
+            em.persist(team);
+            for (int i = 1; i <= 5; i++) {
+                em.persist(new Member("reactive" + i, i * 10, team));
+            }
+        });
+        condition.setTeamName("reactiveTeam");
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'reactive%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name = 'reactiveTeam'").executeUpdate();
+        });
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    @Test
+    public void searchReactive() {
+        condition.setAgeGoe(30);
+
+        StepVerifier.create(memberJpaRepository.searchReactive(condition))
+                .assertNext(dto -> assertThat(dto.getUsername()).isEqualTo("reactive3"))
+                .assertNext(dto -> assertThat(dto.getUsername()).isEqualTo("reactive4"))
+                .assertNext(dto -> assertThat(dto.getUsername()).isEqualTo("reactive5"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void searchReactiveBackpressure() {
+        //2건만 요청하면 2건만 받고, 더 요청하기 전에는 아무것도 오지 않는다
+        StepVerifier.create(memberJpaRepository.searchReactive(condition), 2)
+                .expectNextCount(2)
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void searchReactiveRunsOffCallerThread() {
+        String caller = Thread.currentThread().getName();
+
+        String thread = memberJpaRepository.searchReactive(condition)
+                .map(dto -> Thread.currentThread().getName())
+                .blockFirst(Duration.ofSeconds(5));
+
+        assertThat(thread).isNotEqualTo(caller).startsWith("member-reactive");
+    }
+}
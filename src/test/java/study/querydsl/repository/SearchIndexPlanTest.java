@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class SearchIndexPlanTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    SearchIndexPlan plan = SearchIndexPlan.of(MemberSearchCondition.class);
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        resultCache.invalidateAll();
+    }
+
+    @Test
+    public void planFromCondition() {
+        assertThat(plan.ddl()).containsExactly(
+                "create index idx_member_username on member (username)",
+                "create index idx_team_name on team (name)",
+                "create index idx_member_team_age on member (team_id, age)");
+    }
+
+    //엔티티의 @Table(indexes) 가 계획과 달라지면 ddl-auto 로 만든 스키마에 인덱스가 없다
+    @Test
+    public void entityIndexesMatchPlan() {
+        for (SearchIndexPlan.Index index : plan.getIndexes()) {
+            List<String> columns = jdbcTemplate.queryForList(
+                    "select column_name from information_schema.indexes"
+                            + " where table_name = ? and index_name = ? order by ordinal_position",
+                    String.class, index.getTable().toUpperCase(), index.getName().toUpperCase());
+            assertThat(columns).as(index.getName()).containsExactlyElementsOf(
+                    index.getColumns().stream().map(String::toUpperCase).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void usernameSearchUsesIndex() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+
+        assertThat(explain(condition)).contains("IDX_MEMBER_USERNAME");
+    }
+
+    @Test
+    public void teamAgeSearchUsesIndexes() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(35);
+
+        assertThat(explain(condition)).contains("IDX_TEAM_NAME", "IDX_MEMBER_TEAM_AGE");
+    }
+
+    //실제로 실행한 검색 SQL 을 같은 파라미터로 EXPLAIN 한다
+    private String explain(MemberSearchCondition condition) {
+        SqlStatementRecorder.clear();
+        memberJpaRepository.search(condition);
+        String sql = SqlStatementRecorder.last();
+
+        //바인딩 순서는 where 절 순서(username, teamName, ageGoe, ageLoe)와 같다
+        Object[] params = Stream.of(condition.getUsername(), condition.getTeamName(), condition.getAgeGoe(), condition.getAgeLoe())
+                .filter(Objects::nonNull)
+                .toArray();
+        return jdbcTemplate.queryForObject("explain " + sql, String.class, params);
+    }
+}
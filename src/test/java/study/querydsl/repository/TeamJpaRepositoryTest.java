@@ -0,0 +1,82 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+//2차 캐시는 커밋된 데이터만 다루므로 이 테스트는 롤백하지 않고 직접 지운다
+@SpringBootTest
+class TeamJpaRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+
+    @Autowired
+    MeterRegistry registry;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    Team teamA;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        teamA = new Team("cachedTeamA");
+        tx.executeWithoutResult(status -> teamJpaRepository.save(teamA));
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Team t where t.name = 'cachedTeamA'").executeUpdate());
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    public void findByIdHitsSecondLevelCache() {
+        //트랜잭션마다 새 영속성 컨텍스트라 1차 캐시가 아닌 2차 캐시에서 가져온다
+        Team first = tx.execute(status -> teamJpaRepository.findById(teamA.getId()).get());
+        Team second = tx.execute(status -> teamJpaRepository.findById(teamA.getId()).get());
+
+        assertThat(first.getName()).isEqualTo("cachedTeamA");
+        assertThat(second.getName()).isEqualTo("cachedTeamA");
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(2);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    //hibernate.generate_statistics 를 켜면 micrometer 로도 나간다 (/actuator/metrics)
+    @Test
+    public void secondLevelCacheHitsAreMetered() {
+        tx.execute(status -> teamJpaRepository.findById(teamA.getId()).get());
+
+        double hits = registry.find("hibernate.second.level.cache.requests").tag("result", "hit")
+                .functionCounters().stream()
+                .mapToDouble(FunctionCounter::count)
+                .sum();
+        assertThat(hits).isPositive();
+    }
+}
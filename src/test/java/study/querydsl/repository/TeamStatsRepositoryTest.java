@@ -0,0 +1,260 @@
+package study.querydsl.repository;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkWriteEvent;
+import study.querydsl.event.EntityWriteEvent;
+import study.querydsl.support.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+//team_stats 는 커밋 직전에 갱신되므로 이 테스트는 롤백하지 않고 직접 지운다
+@SpringBootTest
+class TeamStatsRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("statsA");
+            Team teamB = new Team("statsB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("stats1", 10, teamA));
+            em.persist(new Member("stats2", 20, teamA));
+            em.persist(new Member("stats3", 30, teamB));
+            em.persist(new Member("stats4", 40, teamB));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'stats%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'stats%'").executeUpdate();
+        });
+        //JPQL 벌크 delete 는 이벤트가 없으므로 직접 맞춘다
+        teamStatsRepository.rebuild();
+        resultCache.invalidateAll();
+        countCache.invalidateAll();
+        em.getEntityManagerFactory().getCache().evictAll();
+    }
+
+    @Test
+    public void statsOnInsert() {
+        TeamStatsDto teamA = teamStatsRepository.findByTeamName("statsA").orElseThrow();
+
+        assertThat(teamA.getMemberCount()).isEqualTo(2);
+        assertThat(teamA.getAgeSum()).isEqualTo(30);
+        assertThat(teamA.getAgeAvg()).isEqualTo(15);
+        assertThat(teamA.getAgeMin()).isEqualTo(10);
+        assertThat(teamA.getAgeMax()).isEqualTo(20);
+        assertMatchesAggregate();
+    }
+
+    @Test
+    public void statsOnUpdateAndDelete() {
+        tx.executeWithoutResult(status -> {
+            //팀 A 의 최소 나이였던 회원이 나이가 바뀌고 팀 B 로 옮긴다
+            Member stats1 = findMember("stats1");
+            stats1.setAge(50);
+            stats1.setTeam(findMember("stats3").getTeam());
+            em.remove(findMember("stats4"));
+        });
+
+        TeamStatsDto teamA = teamStatsRepository.findByTeamName("statsA").orElseThrow();
+        assertThat(teamA.getMemberCount()).isEqualTo(1);
+        assertThat(teamA.getAgeMin()).isEqualTo(20);
+        assertThat(teamA.getAgeMax()).isEqualTo(20);
+
+        TeamStatsDto teamB = teamStatsRepository.findByTeamName("statsB").orElseThrow();
+        assertThat(teamB.getMemberCount()).isEqualTo(2);
+        assertThat(teamB.getAgeSum()).isEqualTo(80);
+        assertThat(teamB.getAgeMin()).isEqualTo(30);
+        assertThat(teamB.getAgeMax()).isEqualTo(50);
+        assertMatchesAggregate();
+    }
+
+    @Test
+    public void lastMemberRemovedDropsTeamStats() {
+        tx.executeWithoutResult(status -> {
+            em.remove(findMember("stats1"));
+            em.remove(findMember("stats2"));
+        });
+
+        assertThat(teamStatsRepository.findByTeamName("statsA")).isEmpty();
+        assertMatchesAggregate();
+    }
+
+    @Test
+    public void rollbackLeavesStatsUnchanged() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("stats5", 90, findMember("stats1").getTeam()));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(teamStatsRepository.findByTeamName("statsA").orElseThrow().getMemberCount()).isEqualTo(2);
+        assertMatchesAggregate();
+    }
+
+    @Test
+    public void bulkUpdateMaintainsStats() {
+        memberBulkRepository.update(member.username.in("stats1", "stats3"), update -> update.set(member.age, 5));
+
+        assertThat(teamStatsRepository.findByTeamName("statsA").orElseThrow().getAgeMin()).isEqualTo(5);
+        assertThat(teamStatsRepository.findByTeamName("statsB").orElseThrow().getAgeSum()).isEqualTo(45);
+        assertMatchesAggregate();
+    }
+
+    //Session.update 로 붙인 준영속 회원은 변경 전 상태가 없다: 그 회원의 팀만 고치고 전체를 다시 만들지 않는다
+    @Test
+    public void detachedUpdateAdjustsOnlyAffectedTeams() {
+        Member stats1 = tx.execute(status -> findMember("stats1"));
+        Team teamB = tx.execute(status -> findMember("stats3").getTeam());
+        stats1.setAge(50);
+        stats1.setTeam(teamB);
+        SqlStatementRecorder.clear();
+
+        tx.executeWithoutResult(status -> em.unwrap(Session.class).update(stats1));
+
+        assertThat(SqlStatementRecorder.statements()).noneMatch(sql -> sql.startsWith("delete from team_stats"));
+        assertThat(teamStatsRepository.findByTeamName("statsA").orElseThrow().getMemberCount()).isEqualTo(1);
+        assertThat(teamStatsRepository.findByTeamName("statsB").orElseThrow().getAgeMax()).isEqualTo(50);
+        assertMatchesAggregate();
+    }
+
+    //변경 전/후 상태가 없는 벌크 이벤트는 커밋 뒤 백그라운드에서 다시 만든다
+    @Test
+    public void bulkEventWithoutRowsRebuildsAfterCommit() throws Exception {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("update Member m set m.age = 1 where m.username = 'stats1'").executeUpdate();
+            publisher.publishEvent(new BulkWriteEvent(Member.class, EntityWriteEvent.Type.UPDATE,
+                    List.of(findMember("stats1").getId()), null, null));
+        });
+
+        for (int i = 0; i < 50 && teamStatsRepository.findByTeamName("statsA").orElseThrow().getAgeMin() != 1; i++) {
+            Thread.sleep(100);
+        }
+        assertMatchesAggregate();
+    }
+
+    @Test
+    public void readsSummaryTable() {
+        SqlStatementRecorder.clear();
+
+        teamStatsRepository.findAll();
+
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0)).contains("from team_stats").doesNotContain("from member");
+    }
+
+    @Test
+    public void concurrentFirstMember() throws Exception {
+        Long teamId = tx.execute(status -> {
+            Team teamC = new Team("statsC");
+            em.persist(teamC);
+            return teamC.getId();
+        });
+
+        //다른 트랜잭션이 같은 팀의 첫 요약 행을 넣고 아직 커밋하지 않은 상태
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection other = dataSource.getConnection()) {
+            other.setAutoCommit(false);
+            try (PreparedStatement insert = other.prepareStatement(
+                    "insert into team_stats (team_id, member_count, age_sum, age_min, age_max) values (?, 1, 60, 60, 60)")) {
+                insert.setLong(1, teamId);
+                insert.executeUpdate();
+            }
+
+            Future<?> future = executor.submit(() -> tx.executeWithoutResult(status ->
+                    em.persist(new Member("stats50", 50, em.getReference(Team.class, teamId)))));
+            //insert 가 커밋되지 않은 행의 키에서 기다리는 동안 커밋한다
+            Thread.sleep(300);
+            other.commit();
+            future.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        TeamStatsDto teamC = teamStatsRepository.findByTeamName("statsC").orElseThrow();
+        assertThat(teamC.getMemberCount()).isEqualTo(2);
+        assertThat(teamC.getAgeSum()).isEqualTo(110);
+        assertThat(teamC.getAgeMin()).isEqualTo(50);
+        assertThat(teamC.getAgeMax()).isEqualTo(60);
+    }
+
+    @Test
+    public void rebuild() {
+        teamStatsRepository.rebuild();
+
+        assertMatchesAggregate();
+    }
+
+    private Member findMember(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+
+    private void assertMatchesAggregate() {
+        assertThat(ours(teamStatsRepository.findAll())).isEqualTo(ours(teamStatsRepository.aggregate()));
+    }
+
+    private static List<TeamStatsDto> ours(List<TeamStatsDto> stats) {
+        return stats.stream()
+                .filter(dto -> dto.getTeamName().startsWith("stats"))
+                .collect(Collectors.toList());
+    }
+}
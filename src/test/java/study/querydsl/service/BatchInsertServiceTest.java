@@ -0,0 +1,51 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SqlStatementRecorder;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class BatchInsertServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    BatchInsertService batchInsertService;
+
+    @Test
+    public void persistAllInBatches() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new Member("member" + i, i % 100, teamA));
+        }
+
+        SqlStatementRecorder.clear();
+        long count = batchInsertService.persistAll(members);
+
+        assertThat(count).isEqualTo(250);
+        //batch_size(100) 마다 flush + clear
+        assertThat(em.contains(members.get(0))).isFalse();
+        assertThat(em.createQuery("select count(m) from Member m", Long.class).getSingleResult()).isEqualTo(250);
+
+        //insert 문은 배치마다 한 번만 준비되고, 시퀀스는 allocationSize(50) 마다 한 번만 조회한다
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements).filteredOn(sql -> sql.startsWith("insert into member")).hasSize(3);
+        assertThat(statements).filteredOn(sql -> sql.contains("member_seq")).hasSizeLessThanOrEqualTo(6);
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.support;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+//SqlStatementRecorder 로 기록한 SQL 을 검증하는 테스트 도우미
+public final class SqlAssertions {
+
+    private SqlAssertions() {
+    }
+
+    //마지막 SqlStatementRecorder.clear() 이후 하이버네이트가 실행한 SQL 수
+    public static void assertQueryCount(int expected) {
+        List<String> statements = SqlStatementRecorder.statements();
+        assertThat(statements).as("실행한 SQL").hasSize(expected);
+    }
+
+    //action 이 실행한 SQL 중 똑같은 SQL 이 두 번 이상 나오면 (엔티티/컬렉션 하나마다 쿼리 한 번) N+1 로 보고 실패한다
+    //실행한 SQL 목록을 돌려주므로 쿼리 수도 이어서 검증할 수 있다
+    public static List<String> assertNoNPlusOne(Runnable action) {
+        SqlStatementRecorder.clear();
+        action.run();
+        List<String> statements = SqlStatementRecorder.statements();
+
+        Map<String, Long> repeated = statements.stream()
+                .collect(Collectors.groupingBy(Function.identity(), LinkedHashMap::new, Collectors.counting()));
+        repeated.values().removeIf(count -> count < 2);
+        assertThat(repeated).as("N+1 로 반복 실행된 SQL (SQL -> 횟수)").isEmpty();
+        return statements;
+    }
+}
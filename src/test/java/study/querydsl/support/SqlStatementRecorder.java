@@ -0,0 +1,41 @@
+package study.querydsl.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//테스트에서 하이버네이트가 실제로 실행한 SQL 을 확인하기 위한 StatementInspector
+//application.yml 의 hibernate.session_factory.statement_inspector 로 등록한다
+public class SqlStatementRecorder implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> statements = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        statements.get().add(stripComment(sql));
+        return sql;
+    }
+
+    public static void clear() {
+        statements.get().clear();
+    }
+
+    public static List<String> statements() {
+        return new ArrayList<>(statements.get());
+    }
+
+    public static String last() {
+        List<String> recorded = statements.get();
+        return recorded.isEmpty() ? null : recorded.get(recorded.size() - 1);
+    }
+
+    //use_sql_comments 로 붙는 JPQL 주석을 떼고 SQL 만 남긴다
+    private static String stripComment(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.startsWith("/*")) {
+            trimmed = trimmed.substring(trimmed.indexOf("*/") + 2).trim();
+        }
+        return trimmed.replaceAll("\\s+", " ");
+    }
+}